@@ -0,0 +1,114 @@
+package study.querydsl.bench;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.UsernameBloomFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 인프로세스 벤치마크 공통: 인메모리 H2 로 애플리케이션을 띄우고, JDBC 로 데이터를 넣고, 시간을 잰다.
+ */
+final class BenchSupport {
+
+    static final int TEAMS = 10;
+
+    private BenchSupport() {
+    }
+
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        return start(WebApplicationType.NONE, memoryUrl(database), properties);
+    }
+
+    /**
+     * 인메모리가 아닌 다른 URL(TCP, 파일)로 띄운다
+     */
+    static ConfigurableApplicationContext startAt(String url, String... properties) {
+        return start(WebApplicationType.NONE, url, properties);
+    }
+
+    /**
+     * 임의 포트로 톰캣까지 띄운다. 포트는 {@link #port(ConfigurableApplicationContext)}
+     */
+    static ConfigurableApplicationContext startServer(String database, String... properties) {
+        return start(WebApplicationType.SERVLET, memoryUrl(database), properties);
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+    }
+
+    private static String memoryUrl(String database) {
+        return "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType type, String url, String... properties) {
+        SpringApplication application = new SpringApplication(QuerydslApplication.class);
+        application.setWebApplicationType(type);
+
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=" + url,
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--decorator.datasource.p6spy.enable-logging=false",
+                "--querydsl.warmup.enabled=false",
+                "--server.port=0"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return application.run(args.toArray(String[]::new));
+    }
+
+    /**
+     * team0 ~ team9 와 members 명의 회원. 나이는 0 ~ 99 를 돌아가며 쓴다.
+     * Hibernate 를 거치지 않고 넣으므로 테이블 버전과 username 필터를 직접 갱신한다.
+     */
+    static void seed(ConfigurableApplicationContext context, int members) {
+        seed(context.getBean(JdbcTemplate.class), members);
+        TableVersions tableVersions = context.getBean(TableVersions.class);
+        tableVersions.markWritten(TableVersions.TEAM);
+        tableVersions.markWritten(TableVersions.MEMBER);
+        context.getBeanProvider(UsernameBloomFilter.class).ifAvailable(UsernameBloomFilter::rebuild);
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate, int members) {
+        List<Object[]> teams = new ArrayList<>(TEAMS);
+        for (int i = 0; i < TEAMS; i++) {
+            teams.add(new Object[]{(long) i + 1, "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (team_id, name) values (?, ?)", teams);
+
+        List<Object[]> rows = new ArrayList<>(members);
+        for (int i = 0; i < members; i++) {
+            rows.add(new Object[]{(long) i + 1, "member" + i, i % 100, (long) (i % TEAMS) + 1});
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * 같은 횟수만큼 먼저 돌려 JIT 와 커넥션 풀을 안정시킨 뒤 잰 시간(ns)
+     */
+    static long measure(Runnable query, int iterations) {
+        run(query, iterations);
+        return run(query, iterations);
+    }
+
+    private static long run(Runnable query, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            query.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    static void report(String mode, String query, long nanos, int iterations) {
+        System.out.printf("%-12s %-18s iterations=%d mean=%dus throughput=%.0f ops/s%n",
+                mode, query, iterations, nanos / iterations / 1_000, iterations / (nanos / 1e9));
+    }
+}
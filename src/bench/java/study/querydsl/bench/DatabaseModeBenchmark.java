@@ -0,0 +1,62 @@
+package study.querydsl.bench;
+
+import org.h2.tools.Server;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static study.querydsl.bench.BenchSupport.measure;
+import static study.querydsl.bench.BenchSupport.report;
+
+/**
+ * 같은 JVM 에 띄운 H2 TCP 서버를 거치는 경우와 임베디드(파일, 인메모리) H2 의 search / 페이징 쿼리 처리량을 비교한다.
+ * <p>
+ * ./gradlew databaseModeBenchmark -PbenchMembers=10000 -PbenchIterations=2000
+ */
+public class DatabaseModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int members = Integer.parseInt(args[0]);
+        int iterations = Integer.parseInt(args[1]);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Server tcpServer = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        Path directory = Files.createTempDirectory("h2-bench");
+
+        Map<String, String> modes = new LinkedHashMap<>();
+        modes.put("tcp", "jdbc:h2:tcp://localhost:" + port + "/mem:bench-tcp;DB_CLOSE_DELAY=-1");
+        modes.put("embedded", "jdbc:h2:file:" + directory.resolve("bench") + ";CACHE_SIZE=65536");
+        modes.put("memory", "jdbc:h2:mem:bench-memory;DB_CLOSE_DELAY=-1");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(60);
+        PageRequest pageable = PageRequest.of(1, 20);
+
+        try {
+            for (Map.Entry<String, String> mode : modes.entrySet()) {
+                try (ConfigurableApplicationContext context = BenchSupport.startAt(mode.getValue())) {
+                    BenchSupport.seed(context, members);
+                    MemberRepository repository = context.getBean(MemberRepository.class);
+
+                    report(mode.getKey(), "search", measure(() -> repository.search(condition), iterations), iterations);
+                    report(mode.getKey(), "searchPageSimple", measure(() -> repository.searchPageSimple(condition, pageable), iterations), iterations);
+                    report(mode.getKey(), "searchPageComplex", measure(() -> repository.searchPageComplex(condition, pageable), iterations), iterations);
+                }
+            }
+        } finally {
+            tcpServer.stop();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package study.querydsl.bench;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MemberController 부터 H2 까지 전체 스택의 부하 테스트. 인메모리 DB 로 앱을 띄우고 seed 만큼 회원을 넣는다.
+ * <p>
+ * 열린 모델: 응답을 기다리지 않고 정해진 간격으로 요청을 보낸다. 지연 시간은 실제로 보낸 시각이 아니라
+ * 보냈어야 할 시각부터 재므로, 서버가 밀려 발송이 늦어진 시간까지 포함된다 (coordinated omission 보정).
+ * <p>
+ * ./gradlew loadTest -PloadMembers=10000 -PloadRate=100 -PloadSeconds=30 -PloadWarmupSeconds=10
+ */
+public class MemberLoadTest {
+
+    private static final List<String> ENDPOINTS = List.of("/v1/members", "/v2/members", "/v3/members");
+    private static final long MAX_LATENCY = TimeUnit.SECONDS.toNanos(60);
+
+    public static void main(String[] args) throws Exception {
+        int members = Integer.parseInt(args[0]);
+        int rate = Integer.parseInt(args[1]);
+        int seconds = Integer.parseInt(args[2]);
+        int warmupSeconds = Integer.parseInt(args[3]);
+
+        try (ConfigurableApplicationContext context = BenchSupport.startServer("load-test")) {
+            BenchSupport.seed(context, members);
+            String baseUrl = "http://localhost:" + BenchSupport.port(context);
+
+            ExecutorService executor = Executors.newCachedThreadPool();
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            try {
+                run(client, baseUrl, members, rate, warmupSeconds);
+                Map<String, Result> results = run(client, baseUrl, members, rate, seconds);
+
+                System.out.printf("rate=%d req/s duration=%ds members=%d%n", rate, seconds, members);
+                results.forEach((endpoint, result) -> result.report(endpoint, seconds));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static Map<String, Result> run(HttpClient client, String baseUrl, int members, int rate, int seconds) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        ENDPOINTS.forEach(endpoint -> results.put(endpoint, new Result()));
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            String endpoint = ENDPOINTS.get((int) (i % ENDPOINTS.size()));
+            Result result = results.get(endpoint);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint + randomQuery(members)))
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+
+            long sent = System.nanoTime();
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> result.record(intended, sent, e == null && response.statusCode() == 200)));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(e -> null)
+                .join();
+        return results;
+    }
+
+    /**
+     * MemberSearchCondition 의 각 조건을 절반 확률로 채운다. v2, v3 는 페이지와 정렬도 섞는다.
+     */
+    private static String randomQuery(int members) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder query = new StringBuilder("?");
+        if (random.nextBoolean()) {
+            query.append("username=member").append(random.nextInt(members)).append('&');
+        }
+        if (random.nextBoolean()) {
+            query.append("teamName=team").append(random.nextInt(BenchSupport.TEAMS)).append('&');
+        }
+        int ageGoe = random.nextInt(100);
+        if (random.nextBoolean()) {
+            query.append("ageGoe=").append(ageGoe).append('&');
+        }
+        if (random.nextBoolean()) {
+            query.append("ageLoe=").append(ageGoe + random.nextInt(100 - ageGoe)).append('&');
+        }
+        query.append("page=").append(random.nextInt(5)).append("&size=20");
+        if (random.nextBoolean()) {
+            query.append("&sort=age,desc");
+        }
+        return query.toString();
+    }
+
+    private static class Result {
+
+        private final Recorder corrected = new Recorder(MAX_LATENCY, 3);
+        private final Recorder uncorrected = new Recorder(MAX_LATENCY, 3);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long intended, long sent, boolean success) {
+            long end = System.nanoTime();
+            if (!success) {
+                errors.increment();
+                return;
+            }
+            corrected.recordValue(Math.min(end - intended, MAX_LATENCY));
+            uncorrected.recordValue(Math.min(end - sent, MAX_LATENCY));
+        }
+
+        void report(String endpoint, int seconds) {
+            Histogram correctedHistogram = corrected.getIntervalHistogram();
+            Histogram uncorrectedHistogram = uncorrected.getIntervalHistogram();
+            System.out.printf("%-12s ok=%d errors=%d throughput=%.1f req/s%n",
+                    endpoint, correctedHistogram.getTotalCount(), errors.sum(),
+                    correctedHistogram.getTotalCount() / (double) seconds);
+            print("  corrected", correctedHistogram);
+            print("  service  ", uncorrectedHistogram);
+        }
+
+        private static void print(String label, Histogram histogram) {
+            System.out.printf("%s p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n", label,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
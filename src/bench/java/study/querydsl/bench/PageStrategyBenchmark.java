@@ -0,0 +1,46 @@
+package study.querydsl.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import static study.querydsl.bench.BenchSupport.measure;
+import static study.querydsl.bench.BenchSupport.report;
+
+/**
+ * 내용 + 전체 건수를 구하는 세 가지 방법을 비교한다. 모두 count 가 필요한 꽉 찬 중간 페이지를 읽는다.
+ * <ul>
+ *     <li>fetchResults: searchPageSimple (deprecated fetchResults, 항상 두 쿼리)</li>
+ *     <li>count-query: searchPageComplex (PageableExecutionUtils, 필요할 때만 count)</li>
+ *     <li>window: querydsl.paging.total=window (COUNT(*) OVER(), 한 쿼리)</li>
+ * </ul>
+ * ./gradlew pageStrategyBenchmark -PbenchMembers=10000 -PbenchIterations=2000
+ */
+public class PageStrategyBenchmark {
+
+    public static void main(String[] args) {
+        int members = Integer.parseInt(args[0]);
+        int iterations = Integer.parseInt(args[1]);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(60);
+        PageRequest pageable = PageRequest.of(3, 20);
+
+        try (ConfigurableApplicationContext context = BenchSupport.start("bench-count-query")) {
+            BenchSupport.seed(context, members);
+            MemberRepository repository = context.getBean(MemberRepository.class);
+
+            report("fetchResults", "searchPageSimple", measure(() -> repository.searchPageSimple(condition, pageable), iterations), iterations);
+            report("count-query", "searchPageComplex", measure(() -> repository.searchPageComplex(condition, pageable), iterations), iterations);
+        }
+
+        try (ConfigurableApplicationContext context = BenchSupport.start("bench-window", "querydsl.paging.total=window")) {
+            BenchSupport.seed(context, members);
+            MemberRepository repository = context.getBean(MemberRepository.class);
+
+            report("window", "searchPageComplex", measure(() -> repository.searchPageComplex(condition, pageable), iterations), iterations);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 읽기 경로의 실행 방식별 요청당 할당 메모리와 처리량을 비교한다.
+ * <ul>
+ *     <li>read-write: 일반 트랜잭션 + 관리 엔티티 (스냅샷, 자동 flush)</li>
+ *     <li>read-only: readOnly 트랜잭션(FlushMode.MANUAL) + read-only 힌트</li>
+ *     <li>stateless: MemberJpaRepository.scan (StatelessSession, 영속성 컨텍스트 없음)</li>
+ * </ul>
+ * 검색(DTO)은 바깥 read-write 트랜잭션에 참여할 때와 리포지토리의 readOnly 트랜잭션으로 실행할 때를 비교한다.
+ * <p>
+ * ./gradlew readOnlyBenchmark -PbenchMembers=10000 -PbenchIterations=200
+ */
+public class ReadOnlyBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int members = Integer.parseInt(args[0]);
+        int iterations = Integer.parseInt(args[1]);
+
+        // 회원의 40% 정도를 엔티티로 읽는다
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(59);
+        PageRequest pageable = PageRequest.of(3, 20);
+
+        try (ConfigurableApplicationContext context = BenchSupport.start("bench-read-only")) {
+            BenchSupport.seed(context, members);
+            EntityManager em = context.getBean(EntityManager.class);
+            MemberJpaRepository memberJpaRepository = context.getBean(MemberJpaRepository.class);
+            MemberRepository memberRepository = context.getBean(MemberRepository.class);
+            PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+            TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+
+            report("read-write", "entities", iterations, () ->
+                    readWrite.execute(status -> entities(em, condition, false).size()));
+            report("read-only", "entities", iterations, () ->
+                    readOnly.execute(status -> entities(em, condition, true).size()));
+            // 스캔은 한 건씩 처리하고 버리는 용도라 결과를 모으지 않는다
+            report("stateless", "entities", iterations, () -> {
+                long[] ages = new long[1];
+                return (int) memberJpaRepository.scan(condition, m -> ages[0] += m.getAge());
+            });
+
+            report("read-write", "searchPageComplex", iterations, () ->
+                    readWrite.execute(status -> memberRepository.searchPageComplex(condition, pageable).getNumberOfElements()));
+            report("read-only", "searchPageComplex", iterations, () ->
+                    memberRepository.searchPageComplex(condition, pageable).getNumberOfElements());
+        }
+    }
+
+    private static List<Member> entities(EntityManager em, MemberSearchCondition condition, boolean readOnly) {
+        return new JPAQueryFactory(em)
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.age.goe(condition.getAgeGoe()),
+                        member.age.loe(condition.getAgeLoe()))
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnly)
+                .fetch();
+    }
+
+    /**
+     * 한 번 돌려 JIT 를 안정시킨 뒤 처리량과 요청당 할당 바이트를 잰다
+     */
+    private static void report(String mode, String query, int iterations, Query action) {
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        long rows = 0;
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            rows += action.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-12s %-18s iterations=%d rows/op=%d mean=%dus throughput=%.0f ops/s alloc/op=%dKB%n",
+                mode, query, iterations, rows / iterations, nanos / iterations / 1_000,
+                iterations / (nanos / 1e9), allocated / iterations / 1024);
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        int run();
+    }
+}
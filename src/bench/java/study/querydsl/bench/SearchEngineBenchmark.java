@@ -0,0 +1,41 @@
+package study.querydsl.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static study.querydsl.bench.BenchSupport.measure;
+import static study.querydsl.bench.BenchSupport.report;
+
+/**
+ * 같은 데이터에 대해 querydsl.search.engine=jpa 와 sql 의 search / searchPageComplex 처리량을 비교한다.
+ * <p>
+ * ./gradlew searchEngineBenchmark -PbenchMembers=10000 -PbenchIterations=2000
+ */
+public class SearchEngineBenchmark {
+
+    public static void main(String[] args) {
+        int members = Integer.parseInt(args[0]);
+        int iterations = Integer.parseInt(args[1]);
+
+        for (String engine : List.of("jpa", "sql")) {
+            try (ConfigurableApplicationContext context = BenchSupport.start("bench-" + engine,
+                    "querydsl.search.engine=" + engine)) {
+                BenchSupport.seed(context, members);
+                MemberRepository repository = context.getBean(MemberRepository.class);
+
+                MemberSearchCondition condition = new MemberSearchCondition();
+                condition.setTeamName("team3");
+                condition.setAgeGoe(20);
+                condition.setAgeLoe(60);
+                PageRequest pageable = PageRequest.of(1, 20);
+
+                report(engine, "search", measure(() -> repository.search(condition), iterations), iterations);
+                report(engine, "searchPageComplex", measure(() -> repository.searchPageComplex(condition, pageable), iterations), iterations);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 프로세스 시작부터 첫 번째 /v3/members 200 응답까지 걸린 시간을 잰다.
+ * <p>
+ * ./gradlew startupBenchmark -PstartupRuns=5
+ */
+public class StartupBenchmark {
+
+    private static final int PORT = 18081;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        Path bootJar = Path.of(args[0]);
+        Path fastJar = Path.of(args[1]);
+        Path archive = Path.of(args[2]);
+        int runs = Integer.parseInt(args[3]);
+        String datasourceUrl = args[4];
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> common = List.of("--server.port=" + PORT, "--spring.datasource.url=" + datasourceUrl);
+
+        // 같은 데이터와 같은 워밍업으로 비교하도록 두 모드 모두 local 프로필로 띄운다
+        List<String> defaultMode = new ArrayList<>(List.of(java, "-jar", bootJar.toString(), "--spring.profiles.active=local"));
+        defaultMode.addAll(common);
+
+        List<String> fastMode = new ArrayList<>(List.of(java, "-XX:SharedArchiveFile=" + archive,
+                "-Dspring.aot.enabled=true", "-jar", fastJar.toString(), "--spring.profiles.active=local,fast"));
+        fastMode.addAll(common);
+
+        report("default", measure(defaultMode, fastJar.getParent(), runs));
+        report("fast (AOT + CDS + lazy)", measure(fastMode, fastJar.getParent(), runs));
+    }
+
+    private static long[] measure(List<String> command, Path workingDir, int runs) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/v3/members"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .directory(workingDir.toFile())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try {
+                awaitFirstSuccess(client, request, process, start);
+                millis[run] = (System.nanoTime() - start) / 1_000_000;
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        return millis;
+    }
+
+    private static void awaitFirstSuccess(HttpClient client, HttpRequest request, Process process, long start) throws Exception {
+        while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("application exited with " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // 아직 포트가 열리지 않았거나 기동 중 연결이 끊김
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("no successful /v3/members within " + TIMEOUT);
+    }
+
+    private static void report(String mode, long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-26s runs=%d min=%dms median=%dms max=%dms %s%n",
+                mode, sorted.length, sorted[0], sorted[sorted.length / 2], sorted[sorted.length - 1], Arrays.toString(millis));
+    }
+}
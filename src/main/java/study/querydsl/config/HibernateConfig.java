@@ -0,0 +1,22 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.TableVersionStatementInspector;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.UsernameBloomFilter;
+
+@Configuration
+public class HibernateConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(TableVersions tableVersions,
+                                                                      ObjectProvider<UsernameBloomFilter> usernameFilter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new TableVersionStatementInspector(tableVersions,
+                        () -> usernameFilter.ifAvailable(UsernameBloomFilter::markStale)));
+    }
+}
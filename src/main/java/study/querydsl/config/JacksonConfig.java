@@ -0,0 +1,18 @@
+package study.querydsl.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // @JsonFilter 가 붙은 DTO 는 필터를 따로 주지 않으면 모든 속성을 쓴다 (MemberTeamDto)
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer serializeAllByDefault() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.config;
+
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.SQLTemplates;
+import com.querydsl.sql.SQLTemplatesRegistry;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ConfigurationCondition;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * querydsl-sql 을 쓰는 경로(querydsl.search.engine=sql, querydsl.paging.total=window,
+ * querydsl.analytics.enabled, querydsl.columns.enabled)가 하나라도 켜졌을 때만 만든다.
+ * 방언을 고르느라 기동 시 커넥션을 하나 연다.
+ */
+@Configuration
+@Conditional(QuerydslSqlConfig.SqlQueriesEnabled.class)
+public class QuerydslSqlConfig {
+
+    // sql 패키지의 쿼리 타입(SMember, STeam)에 적힌 스키마
+    private static final String GENERATED_SCHEMA = "PUBLIC";
+
+    /**
+     * @param schema 비어 있으면 스키마를 붙이지 않고 커넥션의 기본 스키마를 쓴다
+     */
+    @Bean
+    public com.querydsl.sql.Configuration querydslSqlConfiguration(DataSource dataSource,
+                                                                   @Value("${querydsl.sql.schema:}") String schema) throws SQLException {
+        // 접속한 DB 에 맞는 방언을 고른다
+        SQLTemplates.Builder templates;
+        try (Connection connection = dataSource.getConnection()) {
+            templates = new SQLTemplatesRegistry().getBuilder(connection.getMetaData());
+        }
+        if (hasText(schema)) {
+            templates.printSchema();
+        }
+        com.querydsl.sql.Configuration configuration = new com.querydsl.sql.Configuration(templates.build());
+        if (hasText(schema) && !GENERATED_SCHEMA.equals(schema)) {
+            configuration.registerSchemaOverride(GENERATED_SCHEMA, schema);
+        }
+        configuration.setExceptionTranslator(new SpringExceptionTranslator());
+        return configuration;
+    }
+
+    /**
+     * 스프링이 관리하는 커넥션을 쓰므로 JPA 트랜잭션에 그대로 참여한다.
+     */
+    @Bean
+    public SQLQueryFactory sqlQueryFactory(com.querydsl.sql.Configuration querydslSqlConfiguration, DataSource dataSource) {
+        return new SQLQueryFactory(querydslSqlConfiguration, new SpringConnectionProvider(dataSource));
+    }
+
+    static class SqlQueriesEnabled extends AnyNestedCondition {
+
+        SqlQueriesEnabled() {
+            super(ConfigurationCondition.ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty(name = "querydsl.search.engine", havingValue = "sql")
+        static class SqlEngine {
+        }
+
+        @ConditionalOnProperty(name = "querydsl.paging.total", havingValue = "window")
+        static class WindowPaging {
+        }
+
+        @ConditionalOnProperty(name = "querydsl.analytics.enabled", havingValue = "true", matchIfMissing = true)
+        static class Analytics {
+        }
+
+        @ConditionalOnProperty(name = "querydsl.columns.enabled", havingValue = "true", matchIfMissing = true)
+        static class Columns {
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberShards;
+import study.querydsl.support.TableVersionStatementInspector;
+import study.querydsl.support.TableVersions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "querydsl.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    // Hibernate 는 시퀀스 값보다 allocationSize 만큼 앞의 id 부터 쓸 수 있으므로 대역 시작에서 여유를 둔다
+    private static final long MEMBER_ID_MARGIN = 1000;
+
+    @Bean(destroyMethod = "close")
+    public MemberShards memberShards(EntityManagerFactoryBuilder builder,
+                                     JpaProperties jpaProperties,
+                                     HibernateProperties hibernateProperties,
+                                     TableVersions tableVersions,
+                                     ConfigurableListableBeanFactory beanFactory,
+                                     @Value("${querydsl.sharding.urls}") List<String> urls,
+                                     @Value("${spring.datasource.username:sa}") String username,
+                                     @Value("${spring.datasource.password:}") String password) {
+        // 기본 데이터소스와 같은 네이밍 전략, ddl-auto 를 쓴다
+        Map<String, Object> properties = hibernateProperties.determineHibernateProperties(
+                jpaProperties.getProperties(), new HibernateSettings());
+        properties.put(AvailableSettings.STATEMENT_INSPECTOR, new TableVersionStatementInspector(tableVersions));
+        // Team 의 엔티티 리스너(TeamChangeListener)가 스프링 빈이다
+        properties.put(AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory));
+
+        List<LocalContainerEntityManagerFactoryBean> factories = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("shard-" + i);
+
+            LocalContainerEntityManagerFactoryBean factory = builder
+                    .dataSource(dataSource)
+                    .packages(Member.class)
+                    .persistenceUnit("shard-" + i)
+                    .properties(properties)
+                    .build();
+            factory.afterPropertiesSet();
+            factories.add(factory);
+        }
+
+        MemberShards shards = new MemberShards(factories);
+        for (int i = 0; i < urls.size(); i++) {
+            reserveMemberIds(shards, i);
+        }
+        return shards;
+    }
+
+    /**
+     * 샤드의 member 시퀀스를 그 샤드의 id 대역으로 옮긴다. 이미 대역 안의 회원이 있으면 그대로 둔다
+     */
+    private static void reserveMemberIds(MemberShards shards, int shard) {
+        long first = MemberShards.firstMemberId(shard);
+        shards.write(shard, em -> {
+            Number maxId = (Number) em.createNativeQuery("select coalesce(max(member_id), 0) from member")
+                    .getSingleResult();
+            if (maxId.longValue() < first) {
+                em.createNativeQuery("alter sequence member_seq restart with " + (first + MEMBER_ID_MARGIN))
+                        .executeUpdate();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.support.limit.AdaptiveConcurrencyInterceptor;
+
+@Configuration
+@ConditionalOnProperty(name = "querydsl.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AdaptiveConcurrencyInterceptor limiter;
+
+    public WebConfig(MeterRegistry meterRegistry,
+                     @Value("${querydsl.limiter.initial-limit:20}") int initialLimit,
+                     @Value("${querydsl.limiter.min-limit:2}") int minLimit,
+                     @Value("${querydsl.limiter.max-limit:200}") int maxLimit,
+                     @Value("${querydsl.limiter.probe-multiplier:30}") int probeMultiplier) {
+        this.limiter = new AdaptiveConcurrencyInterceptor(meterRegistry, initialLimit, minLimit, maxLimit, probeMultiplier);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // MemberController, MemberAnalyticsController
+        registry.addInterceptor(limiter)
+                .addPathPatterns("/v*/members", "/members", "/members/**");
+    }
+}
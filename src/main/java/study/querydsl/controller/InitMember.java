@@ -1,27 +1,35 @@
 package study.querydsl.controller;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
+// 컨텍스트 초기화에서 빠지도록 지연 생성하고, QueryWarmup 이 채워진 DB 로 워밍업하도록 그보다 먼저 샘플 데이터를 넣는다
 @Profile("local")
+@Lazy
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
 @RequiredArgsConstructor
-public class InitMember {
+public class InitMember implements ApplicationRunner {
 
     private final InitMemberService initMemberService;
 
-    @PostConstruct
-    public void init() {
+    @Override
+    public void run(ApplicationArguments args) {
         initMemberService.init();
     }
 
+    @Lazy
     @Component
     static class InitMemberService{
 
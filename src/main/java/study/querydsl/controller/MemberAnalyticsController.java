@@ -0,0 +1,80 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.MemberAgeStatsDto;
+import study.querydsl.repository.MemberAnalyticsRepository;
+import study.querydsl.support.TableVersions;
+
+import java.util.List;
+
+@RestController
+@ConditionalOnProperty(name = "querydsl.analytics.enabled", havingValue = "true", matchIfMissing = true)
+@RequestMapping("/members/analytics")
+@RequiredArgsConstructor
+public class MemberAnalyticsController {
+
+    private static final int MAX_PER_TEAM = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final MemberAnalyticsRepository memberAnalyticsRepository;
+    private final TableVersions tableVersions;
+
+    // 팀을 주지 않으면 전체 회원이 나오므로 페이지(?page=&size=)로 나눠 준다
+    @GetMapping("/age-rank")
+    public List<MemberAgeStatsDto> ageRank(@RequestParam(required = false) String teamName,
+                                           @PageableDefault(size = 100) Pageable pageable,
+                                           WebRequest request){
+        checkPageSize(pageable);
+        if (request.checkNotModified(statsETag())) {
+            return null;
+        }
+        return memberAnalyticsRepository.ageRank(teamName, pageable);
+    }
+
+    @GetMapping("/age-deviation")
+    public List<MemberAgeStatsDto> ageDeviation(@RequestParam(required = false) String teamName,
+                                                @RequestParam(required = false) Double minDeviation,
+                                                @PageableDefault(size = 100) Pageable pageable,
+                                                WebRequest request){
+        checkPageSize(pageable);
+        if (request.checkNotModified(statsETag())) {
+            return null;
+        }
+        return memberAnalyticsRepository.ageDeviation(teamName, minDeviation, pageable);
+    }
+
+    @GetMapping("/oldest")
+    public List<MemberAgeStatsDto> oldest(@RequestParam(required = false) String teamName,
+                                          @RequestParam(defaultValue = "3") int perTeam,
+                                          WebRequest request){
+        if (perTeam < 1 || perTeam > MAX_PER_TEAM) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "perTeam must be between 1 and " + MAX_PER_TEAM);
+        }
+        if (request.checkNotModified(statsETag())) {
+            return null;
+        }
+        return memberAnalyticsRepository.oldestPerTeam(teamName, perTeam);
+    }
+
+    private static void checkPageSize(Pageable pageable) {
+        if (pageable.getPageSize() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be at most " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private String statsETag() {
+        return tableVersions.etag(TableVersions.MEMBER, TableVersions.TEAM);
+    }
+}
@@ -1,36 +1,150 @@
 package study.querydsl.controller;
 
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.querydsl.binding.QuerydslPredicate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import study.querydsl.dto.MemberCreateRequest;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberBatchLoader;
+import study.querydsl.repository.MemberCounterBuffer;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberWriteBehind;
+import study.querydsl.support.CancellableQueries;
+import study.querydsl.support.TableVersions;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.util.StringUtils.hasText;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_BATCH_SEARCH = 50;
+    private static final int MAX_LOOKUP_IDS = 1000;
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberWriteBehind memberWriteBehind;
+    private final MemberCounterBuffer memberCounterBuffer;
+    private final MemberBatchLoader memberBatchLoader;
+    private final TableVersions tableVersions;
+    private final CancellableQueries cancellableQueries;
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, WebRequest request){
+        if (request.checkNotModified(membersETag())) {
+            return null;
+        }
         return memberJpaRepository.searchByBuilder(condition);
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        if (request.checkNotModified(membersETag())) {
+            return null;
+        }
         return memberRepository.searchPageSimple(condition, pageable);
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        if (request.checkNotModified(membersETag())) {
+            return null;
+        }
         return memberRepository.searchPageComplex(condition, pageable);
     }
+
+    /**
+     * 임의의 Member 속성으로 검색한다 (?username=..&team.name=..). GuardedMemberPredicateExecutor 의 제한을 받고,
+     * 클라이언트가 연결을 끊으면 실행 중인 쿼리를 취소한다.
+     */
+    @GetMapping("/v4/members")
+    public DeferredResult<List<MemberTeamDto>> searchMemberV4(@QuerydslPredicate(root = Member.class) Predicate predicate){
+        try {
+            return cancellableQueries.submit(() -> memberRepository.searchByPredicate(predicate));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
+    }
+
+    @PostMapping("/members/batch-search")
+    public List<List<MemberTeamDto>> batchSearch(@RequestBody List<MemberSearchCondition> conditions){
+        if (conditions.size() > MAX_BATCH_SEARCH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "batch-search accepts at most " + MAX_BATCH_SEARCH + " conditions");
+        }
+        if (conditions.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "batch-search conditions must not contain null");
+        }
+        return memberRepository.searchBatch(conditions);
+    }
+
+    /**
+     * id 로 회원을 읽는다 (?ids=3,1,2). 요청한 순서대로, 없는 id 는 빼고 돌려준다
+     */
+    @GetMapping("/members")
+    public List<MemberTeamDto> findMembers(@RequestParam List<Long> ids){
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "at most " + MAX_LOOKUP_IDS + " ids can be looked up at once");
+        }
+        return memberBatchLoader.loadMany(ids).stream()
+                .flatMap(Optional::stream)
+                .map(MemberController::toDto)
+                .toList();
+    }
+
+    @PostMapping("/members")
+    public CompletableFuture<ResponseEntity<Long>> createMember(@RequestBody MemberCreateRequest request){
+        if (!hasText(request.getUsername())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "username is required");
+        }
+        try {
+            return memberWriteBehind.submit(request)
+                    .thenApply(memberId -> ResponseEntity.status(HttpStatus.CREATED).body(memberId));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
+    }
+
+    // 바로 반영되지 않는다. MemberCounterBuffer 참고
+    @PostMapping("/members/{memberId}/age-increments")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void addAge(@PathVariable Long memberId, @RequestParam(defaultValue = "1") int delta){
+        memberCounterBuffer.addAge(memberId, delta);
+    }
+
+    private static MemberTeamDto toDto(Member member) {
+        Team team = member.getTeam();
+        return new MemberTeamDto(member.getId(), member.getUsername(), member.getAge(),
+                team != null ? team.getId() : null,
+                team != null ? team.getName() : null);
+    }
+
+    // 검색 결과는 member, team 테이블에만 의존한다
+    private String membersETag() {
+        return tableVersions.etag(TableVersions.MEMBER, TableVersions.TEAM);
+    }
 }
@@ -0,0 +1,53 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.commaDelimitedListToStringArray;
+
+/**
+ * fields= 를 요청하면 응답의 MemberTeamDto 에서 요청한 속성만 쓴다. 요청하지 않으면 지금까지처럼 모든 속성을 쓴다.
+ */
+@RestControllerAdvice(assignableTypes = MemberController.class)
+public class MemberFieldsResponseAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest)) {
+            return;
+        }
+        String[] values = servletRequest.getServletRequest().getParameterValues("fields");
+        if (values == null) {
+            return;
+        }
+        // MemberSearchCondition.fields 바인딩과 같이 쉼표로 나눈다
+        Set<String> fields = new LinkedHashSet<>();
+        for (String value : values) {
+            for (String field : commaDelimitedListToStringArray(value)) {
+                if (!field.isBlank()) {
+                    fields.add(field.strip());
+                }
+            }
+        }
+        if (fields.isEmpty()) {
+            return;
+        }
+        bodyContainer.setFilters(new SimpleFilterProvider()
+                .addFilter(MemberTeamDto.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields))
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MemberAgeStatsDto {
+
+    private Long memberId;
+    private String username;
+    private int age;
+    private Long teamId;
+    private String teamName;
+    private Long ageRank;        // 팀 안에서 나이 내림차순 순위 (동점은 같은 순위)
+    private Double teamAvgAge;
+    private Double ageDeviation; // age - teamAvgAge
+
+    @QueryProjection
+    public MemberAgeStatsDto(Long memberId, String username, int age, Long teamId, String teamName,
+                             Long ageRank, Double teamAvgAge, Double ageDeviation) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.ageRank = ageRank;
+        this.teamAvgAge = teamAvgAge;
+        this.ageDeviation = ageDeviation;
+    }
+}
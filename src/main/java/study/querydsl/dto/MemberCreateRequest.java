@@ -0,0 +1,11 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+@Data
+public class MemberCreateRequest {
+
+    private String username;
+    private int age;
+    private Long teamId;
+}
@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import java.util.Set;
+
 @Data
 public class MemberSearchCondition {
     // 회원명, 팀명, 나이(ageGoe, ageLoe)
@@ -9,4 +11,8 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    // true 면 member_archive 로 옮겨진 회원도 함께 조회한다
+    private boolean includeArchived;
+    // 응답에 담을 MemberTeamDto 속성 (fields=username,age). 비어 있으면 전체
+    private Set<String> fields;
 }
@@ -1,11 +1,18 @@
 package study.querydsl.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+// fields= 를 요청한 응답에서만 나머지 속성을 뺀다 (MemberFieldsResponseAdvice)
 @Data
+@NoArgsConstructor
+@JsonFilter(MemberTeamDto.FIELDS_FILTER)
 public class MemberTeamDto {
 
+    public static final String FIELDS_FILTER = "memberTeamFields";
+
     private Long memberId;
     private String username;
     private int age;
@@ -2,8 +2,21 @@ package study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
+import study.querydsl.support.MemberUsernameListener;
+import study.querydsl.support.UsernameBloomFilter;
+
+import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        // 정렬 가능한 속성. member_id 를 붙여 tie-breaker 까지 인덱스 순서로 읽는다 (MemberSort)
+        @Index(name = "idx_member_username", columnList = "username, member_id"),
+        @Index(name = "idx_member_age", columnList = "age, member_id"),
+        // MemberArchiver 가 오래된 회원을 찾는다
+        @Index(name = "idx_member_last_active_at", columnList = "last_active_at")
+})
+@EntityListeners(MemberUsernameListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
@@ -12,9 +25,13 @@ public class Member {
     @Id @GeneratedValue
     @Column(name = "member_id")
     private Long id;
+    @Setter(AccessLevel.NONE)
     private String username;
     private int age;
 
+    // 아카이빙 기준. 가입, 회원 정보 변경, 나이 증감(MemberCounterBuffer) 때 갱신된다
+    private LocalDateTime lastActiveAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
@@ -36,8 +53,33 @@ public class Member {
         }
     }
 
+    // flush 전의 이름 변경은 영속성 컨텍스트에만 있으므로 필터에 알린다 (UsernameBloomFilter)
+    public void setUsername(String username) {
+        this.username = username;
+        UsernameBloomFilter.touched(username);
+    }
+
+    @PrePersist
+    private void prePersist() {
+        if (lastActiveAt == null) {
+            lastActiveAt = LocalDateTime.now();
+        }
+    }
+
+    // 변경 감지로 update 될 때가 회원의 활동이다
+    @PreUpdate
+    private void preUpdate() {
+        lastActiveAt = LocalDateTime.now();
+    }
+
+    /**
+     * 연관관계의 주인은 member.team 이다. team.members 가 아직 로딩 전이면 건드리지 않는다.
+     * 로딩하면 팀의 회원 전체를 읽게 되고, 나중에 로딩할 때는 DB 에서 이 회원까지 함께 읽는다 (flush 후).
+     */
     private void changeTeam(Team team) {
         this.team = team;
-        team.getMembers().add(this);
+        if (Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers())) {
+            team.getMembers().add(this);
+        }
     }
 }
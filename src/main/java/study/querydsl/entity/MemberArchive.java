@@ -0,0 +1,38 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 오래 활동이 없어 member 테이블에서 옮겨진 회원. member_id 는 원래 값을 그대로 쓴다.
+ */
+@Entity
+@Table(name = "member_archive")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString(of = {"id", "username", "age"})
+public class MemberArchive {
+
+    @Id
+    @Column(name = "member_id")
+    private Long id;
+    private String username;
+    private int age;
+    private LocalDateTime lastActiveAt;
+    private LocalDateTime archivedAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "team_id")
+    private Team team;
+
+    public MemberArchive(Member member, LocalDateTime archivedAt) {
+        this.id = member.getId();
+        this.username = member.getUsername();
+        this.age = member.getAge();
+        this.lastActiveAt = member.getLastActiveAt();
+        this.team = member.getTeam();
+        this.archivedAt = archivedAt;
+    }
+}
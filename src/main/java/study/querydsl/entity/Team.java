@@ -2,11 +2,14 @@ package study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import study.querydsl.support.TeamChangeListener;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@EntityListeners(TeamChangeListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
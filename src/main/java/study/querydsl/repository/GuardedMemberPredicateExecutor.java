@@ -0,0 +1,52 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * {@link org.springframework.data.querydsl.QuerydslPredicateExecutor} 의 메서드를 덮어써 모든 predicate 조회에 제한을 건다.
+ * <ul>
+ *     <li>인덱스가 있는 컬럼을 eq, in, between, 범위, 접두 like, isNull 로 비교하지 않는 predicate 는 거부 (ne, not, like '%x' 는 인덱스를 타지 않는다)</li>
+ *     <li>querydsl.guard.timeout-ms 를 count, exists 를 포함한 모든 쿼리의 statement timeout 힌트로 설정</li>
+ *     <li>한 번에 querydsl.guard.max-rows 건을 넘게 읽으면 거부</li>
+ * </ul>
+ * 위반할 때마다 member.query.guard.violations 카운터가 올라간다.
+ */
+public interface GuardedMemberPredicateExecutor {
+
+    Optional<Member> findOne(Predicate predicate);
+
+    Iterable<Member> findAll(Predicate predicate);
+
+    Iterable<Member> findAll(Predicate predicate, Sort sort);
+
+    Iterable<Member> findAll(Predicate predicate, OrderSpecifier<?>... orders);
+
+    Iterable<Member> findAll(OrderSpecifier<?>... orders);
+
+    Page<Member> findAll(Predicate predicate, Pageable pageable);
+
+    long count(Predicate predicate);
+
+    boolean exists(Predicate predicate);
+
+    /**
+     * 제한을 걸 수 없어 지원하지 않는다
+     */
+    <S extends Member, R> R findBy(Predicate predicate, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction);
+
+    /**
+     * 같은 제한 아래에서 team 을 조인해 MemberTeamDto 로 읽는다 (/v4/members)
+     */
+    List<MemberTeamDto> searchByPredicate(Predicate predicate);
+}
@@ -0,0 +1,249 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilderFactory;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.QueryTimeoutException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.repository.query.FluentQuery;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+public class GuardedMemberPredicateExecutorImpl implements GuardedMemberPredicateExecutor {
+
+    private static final String TIMEOUT_HINT = "jakarta.persistence.query.timeout";
+
+    // member 루트 기준 경로. PK, FK, @Index 가 있는 컬럼
+    private static final Set<String> INDEXED = Set.of("id", "username", "age", "team", "team.id", "team.name");
+
+    // 인덱스 범위 탐색이 되는 비교. ne, not, isNotNull, lower(), like '%x' 는 인덱스 컬럼이어도 전체를 훑는다
+    private static final Set<Operator> SEEKABLE = Set.of(
+            Ops.EQ, Ops.IN, Ops.BETWEEN, Ops.GT, Ops.GOE, Ops.LT, Ops.LOE, Ops.STARTS_WITH, Ops.IS_NULL);
+
+    private final JPAQueryFactory queryFactory;
+    private final Querydsl querydsl;
+    private final MeterRegistry meterRegistry;
+    private final int timeoutMs;
+    private final int maxRows;
+    // 기본 데이터소스만 읽으므로 샤딩이 켜져 있으면 쓸 수 없다
+    private final boolean sharded;
+
+    public GuardedMemberPredicateExecutorImpl(EntityManager em,
+                                              MeterRegistry meterRegistry,
+                                              ObjectProvider<MemberShards> shards,
+                                              @Value("${querydsl.guard.timeout-ms:3000}") int timeoutMs,
+                                              @Value("${querydsl.guard.max-rows:1000}") int maxRows) {
+        this.sharded = shards.getIfAvailable() != null;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.querydsl = new Querydsl(em, new PathBuilderFactory().create(Member.class));
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public Optional<Member> findOne(Predicate predicate) {
+        List<Member> result = fetch(query(predicate).limit(2));
+        if (result.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, result.size());
+        }
+        return result.stream().findFirst();
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate) {
+        return fetchCapped(query(predicate));
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate, Sort sort) {
+        return fetchCapped((JPAQuery<Member>) querydsl.applySorting(sort, query(predicate)));
+    }
+
+    @Override
+    public Iterable<Member> findAll(Predicate predicate, OrderSpecifier<?>... orders) {
+        return fetchCapped(query(predicate).orderBy(orders));
+    }
+
+    @Override
+    public Iterable<Member> findAll(OrderSpecifier<?>... orders) {
+        return findAll(null, orders);
+    }
+
+    @Override
+    public Page<Member> findAll(Predicate predicate, Pageable pageable) {
+        if (pageable.isPaged() && pageable.getPageSize() > maxRows) {
+            throw violation("row_cap", "page size " + pageable.getPageSize() + " exceeds " + maxRows);
+        }
+        JPAQuery<Member> query = query(predicate);
+        if (pageable.isUnpaged()) {
+            List<Member> content = fetchCapped((JPAQuery<Member>) querydsl.applySorting(pageable.getSort(), query));
+            return new PageImpl<>(content, pageable, content.size());
+        }
+        List<Member> content = fetch((JPAQuery<Member>) querydsl.applyPagination(pageable, query));
+        return new PageImpl<>(content, pageable, count(predicate));
+    }
+
+    @Override
+    public long count(Predicate predicate) {
+        return timed(() -> query(predicate).select(member.count()).fetchOne());
+    }
+
+    @Override
+    public boolean exists(Predicate predicate) {
+        return timed(() -> query(predicate).select(member.id).limit(1).fetchFirst() != null);
+    }
+
+    @Override
+    public <S extends Member, R> R findBy(Predicate predicate, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw violation("unsupported", "findBy(predicate, queryFunction) is not available, use findAll");
+    }
+
+    @Override
+    public List<MemberTeamDto> searchByPredicate(Predicate predicate) {
+        rejectSharded();
+        requireIndexedColumn(predicate);
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(predicate)
+                .orderBy(member.id.asc())
+                .setHint(TIMEOUT_HINT, timeoutMs);
+        return fetchCapped(query);
+    }
+
+    /**
+     * 이 쿼리에서 파생한 조회(내용, count, exists, 페이지 건수)는 모두 같은 timeout 힌트를 갖는다
+     */
+    JPAQuery<Member> query(Predicate predicate) {
+        rejectSharded();
+        requireIndexedColumn(predicate);
+        return queryFactory
+                .selectFrom(member)
+                .where(predicate)
+                .setHint(TIMEOUT_HINT, timeoutMs);
+    }
+
+    /**
+     * 한 건 더 읽어서 max-rows 를 넘는지 확인한다
+     */
+    private <T> List<T> fetchCapped(JPAQuery<T> query) {
+        List<T> result = fetch(query.limit(maxRows + 1L));
+        if (result.size() > maxRows) {
+            throw violation("row_cap", "predicate matches more than " + maxRows + " rows");
+        }
+        return result;
+    }
+
+    private <T> List<T> fetch(JPAQuery<T> query) {
+        return timed(query::fetch);
+    }
+
+    private <T> T timed(Supplier<T> query) {
+        try {
+            return query.get();
+        } catch (QueryTimeoutException e) {
+            meterRegistry.counter("member.query.guard.violations", "violation", "timeout").increment();
+            throw e;
+        }
+    }
+
+    private void rejectSharded() {
+        if (sharded) {
+            throw new UnroutedShardAccessException("GuardedMemberPredicateExecutor");
+        }
+    }
+
+    private void requireIndexedColumn(Predicate predicate) {
+        if (predicate == null || !seeksIndex(predicate)) {
+            throw violation("no_indexed_column", "predicate must compare one of the indexed properties " + INDEXED
+                    + " with eq, in, between, a range, a prefix like or isNull");
+        }
+    }
+
+    /**
+     * 인덱스로 행을 좁힐 수 있는 predicate 인지 본다. and 는 한쪽만, or 는 모든 쪽이 좁혀야 한다.
+     * 서브쿼리 안의 컬럼은 바깥 행을 줄여 주지 않는다
+     */
+    private static boolean seeksIndex(Expression<?> expression) {
+        if (expression instanceof BooleanBuilder builder) {
+            return seeksIndex(builder.getValue());
+        }
+        if (!(expression instanceof Operation<?> operation)) {
+            return false;
+        }
+        Operator operator = operation.getOperator();
+        if (operator == Ops.AND) {
+            return operation.getArgs().stream().anyMatch(GuardedMemberPredicateExecutorImpl::seeksIndex);
+        }
+        if (operator == Ops.OR) {
+            return operation.getArgs().stream().allMatch(GuardedMemberPredicateExecutorImpl::seeksIndex);
+        }
+        if (!SEEKABLE.contains(operator) && !(operator == Ops.LIKE && isPrefixPattern(operation.getArg(1)))) {
+            return false;
+        }
+        return operation.getArg(0) instanceof Path<?> path && INDEXED.contains(propertyOf(path));
+    }
+
+    // like 'abc%' 만 인덱스를 탄다
+    private static boolean isPrefixPattern(Expression<?> pattern) {
+        return pattern instanceof Constant<?> constant
+                && constant.getConstant() instanceof String value
+                && !value.isEmpty()
+                && value.charAt(0) != '%'
+                && value.charAt(0) != '_';
+    }
+
+    /**
+     * member.team.name -> "team.name"
+     */
+    private static String propertyOf(Path<?> path) {
+        StringBuilder property = new StringBuilder();
+        for (Path<?> current = path; current.getMetadata().getParent() != null; current = current.getMetadata().getParent()) {
+            if (!property.isEmpty()) {
+                property.insert(0, '.');
+            }
+            property.insert(0, current.getMetadata().getName());
+        }
+        return property.toString();
+    }
+
+    private QueryBudgetException violation(String violation, String message) {
+        meterRegistry.counter("member.query.guard.violations", "violation", violation).increment();
+        return new QueryBudgetException(message);
+    }
+}
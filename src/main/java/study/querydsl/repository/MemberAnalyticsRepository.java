@@ -0,0 +1,127 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeStatsDto;
+import study.querydsl.dto.QMemberAgeStatsDto;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * 팀별 나이 통계. 서브쿼리 대신 윈도 함수(RANK, AVG OVER PARTITION BY team_id)로 한 번에 계산한다.
+ * <p>
+ * 윈도 함수 결과로는 WHERE 를 걸 수 없으므로 인라인 뷰(stats)로 감싼 뒤 바깥에서 거른다.
+ * 기본 데이터소스만 읽으므로 샤딩이 켜져 있으면 쓸 수 없다. 검색 엔진 설정과 상관없이 querydsl.analytics.enabled 로 켜고 끈다.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.analytics.enabled", havingValue = "true", matchIfMissing = true)
+@Transactional(readOnly = true)
+public class MemberAnalyticsRepository {
+
+    private static final PathBuilder<Object> stats = new PathBuilder<>(Object.class, "stats");
+    private static final NumberPath<Long> statsMemberId = stats.getNumber("memberId", Long.class);
+    private static final NumberPath<Long> statsTeamId = stats.getNumber("teamId", Long.class);
+    private static final NumberPath<Long> statsAgeRank = stats.getNumber("ageRank", Long.class);
+    private static final NumberPath<Double> statsAgeDeviation = stats.getNumber("ageDeviation", Double.class);
+
+    private final SQLQueryFactory queryFactory;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    private final ObjectProvider<MemberShards> shards;
+
+    /**
+     * 팀 안에서 나이가 많은 순서의 순위. 회원 수만큼 나오므로 페이지로 나눠 읽는다
+     */
+    public List<MemberAgeStatsDto> ageRank(String teamName, Pageable pageable) {
+        return page(fromStats(teamName)
+                .orderBy(statsTeamId.asc(), statsAgeRank.asc(), statsMemberId.asc()), pageable)
+                .fetch();
+    }
+
+    /**
+     * 팀 평균 나이와의 차이. minDeviation 을 주면 그 이상만 (0 이면 팀 평균 이상인 회원)
+     */
+    public List<MemberAgeStatsDto> ageDeviation(String teamName, Double minDeviation, Pageable pageable) {
+        return page(fromStats(teamName)
+                .where(minDeviation != null ? statsAgeDeviation.goe(minDeviation) : null)
+                .orderBy(statsTeamId.asc(), statsAgeDeviation.desc(), statsMemberId.asc()), pageable)
+                .fetch();
+    }
+
+    // 같은 순서의 행이 페이지 사이를 오가지 않도록 memberId 까지 정렬한다
+    private static SQLQuery<MemberAgeStatsDto> page(SQLQuery<MemberAgeStatsDto> query, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            throw new IllegalArgumentException("member analytics must be read page by page");
+        }
+        return query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+    }
+
+    /**
+     * 팀별 나이가 많은 상위 N 명. 동점이면 N 명보다 많을 수 있다.
+     */
+    public List<MemberAgeStatsDto> oldestPerTeam(String teamName, int limit) {
+        return fromStats(teamName)
+                .where(statsAgeRank.loe(limit))
+                .orderBy(statsTeamId.asc(), statsAgeRank.asc())
+                .fetch();
+    }
+
+    private SQLQuery<MemberAgeStatsDto> fromStats(String teamName) {
+        if (shards.getIfAvailable() != null) {
+            throw new UnroutedShardAccessException("MemberAnalyticsRepository");
+        }
+        NumberExpression<Double> age = member.age.castToNum(Double.class);
+        NumberExpression<Double> teamAvgAge = Expressions.asNumber(SQLExpressions.avg(age)
+                .over().partitionBy(member.teamId));
+
+        SQLQuery<?> statsQuery = queryFactory
+                .select(member.memberId.as("memberId"),
+                        member.username.as("username"),
+                        member.age.as("age"),
+                        team.teamId.as("teamId"),
+                        team.name.as("teamName"),
+                        SQLExpressions.rank().over()
+                                .partitionBy(member.teamId)
+                                .orderBy(member.age.desc())
+                                .as("ageRank"),
+                        teamAvgAge.as("teamAvgAge"),
+                        age.subtract(teamAvgAge).as("ageDeviation"))
+                .from(member)
+                .join(team).on(member.teamId.eq(team.teamId))
+                .where(teamNameEq(teamName));
+
+        return queryFactory
+                .select(new QMemberAgeStatsDto(
+                        statsMemberId,
+                        stats.getString("username"),
+                        stats.getNumber("age", Integer.class),
+                        statsTeamId,
+                        stats.getString("teamName"),
+                        statsAgeRank,
+                        stats.getNumber("teamAvgAge", Double.class),
+                        statsAgeDeviation))
+                .from(statsQuery, stats);
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null ;
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberArchive;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * last_active_at 이 inactive-days 보다 오래된 회원을 member_archive 로 옮긴다. last_active_at 을 언제 갱신하는지는 {@link Member} 참고.
+ * <p>
+ * chunk-size 건씩 나눠 청크마다 따로 커밋하므로 긴 트랜잭션이나 큰 락을 잡지 않는다.
+ * 중간에 실패해도 커밋된 청크는 그대로이고, 다시 실행하면 남은 회원부터 옮긴다.
+ * 기본 데이터소스만 옮기므로 샤딩과 함께 켤 수 없다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.archive.enabled", havingValue = "true")
+public class MemberArchiver {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration inactivePeriod;
+    private final int chunkSize;
+
+    public MemberArchiver(EntityManager em,
+                          TransactionTemplate transactionTemplate,
+                          ObjectProvider<MemberShards> shards,
+                          @Value("${querydsl.archive.inactive-days:365}") long inactiveDays,
+                          @Value("${querydsl.archive.chunk-size:1000}") int chunkSize) {
+        if (shards.getIfAvailable() != null) {
+            throw new UnroutedShardAccessException("MemberArchiver");
+        }
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = transactionTemplate;
+        this.inactivePeriod = Duration.ofDays(inactiveDays);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${querydsl.archive.cron:0 0 3 * * *}")
+    public int archiveInactiveMembers() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(inactivePeriod);
+
+        int archived = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> moveChunk(cutoff));
+            archived += moved;
+        } while (moved == chunkSize);
+
+        log.info("archived {} members inactive since {}", archived, cutoff);
+        return archived;
+    }
+
+    private int moveChunk(LocalDateTime cutoff) {
+        List<Member> cold = queryFactory
+                .selectFrom(member)
+                .where(member.lastActiveAt.lt(cutoff))
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .fetch();
+        if (cold.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime archivedAt = LocalDateTime.now();
+        for (Member coldMember : cold) {
+            em.persist(new MemberArchive(coldMember, archivedAt));
+        }
+        em.flush();
+
+        queryFactory
+                .delete(member)
+                .where(member.id.in(cold.stream().map(Member::getId).toList()))
+                .execute();
+        em.clear();
+        return cold.size();
+    }
+}
@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 요청 하나 동안 모인 findById 호출을 member.id in (...) 쿼리 하나로 처리한다.
+ * <p>
+ * {@link #load(Long)} 로 id 를 모은 뒤 {@link #dispatch()} 로 한 번에 조회한다.
+ * 한 번 조회한 id 는 요청이 끝날 때까지 다시 조회하지 않는다. 요청 스레드 하나에서만 사용한다.
+ * GET /members?ids= 가 이것으로 회원을 읽는다.
+ * <p>
+ * {@link MemberJpaRepository#findById(Long)} 는 이것을 거치지 않는다 (이유는 그 메서드 참고).
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class MemberBatchLoader {
+
+    // IN 절 파라미터 수 상한
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final MemberJpaRepository memberJpaRepository;
+
+    private final Map<Long, Optional<Member>> memo = new HashMap<>();
+    private final Map<Long, CompletableFuture<Optional<Member>>> pending = new LinkedHashMap<>();
+
+    public CompletableFuture<Optional<Member>> load(Long id) {
+        Optional<Member> cached = memo.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+    }
+
+    public Optional<Member> get(Long id) {
+        CompletableFuture<Optional<Member>> future = load(id);
+        dispatch();
+        return future.join();
+    }
+
+    /**
+     * 요청한 순서대로 결과를 돌려준다. 중복 id 는 같은 결과를 공유한다.
+     */
+    public List<Optional<Member>> loadMany(List<Long> ids) {
+        List<CompletableFuture<Optional<Member>>> futures = ids.stream()
+                .map(this::load)
+                .toList();
+        dispatch();
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    public void dispatch() {
+        while (!pending.isEmpty()) {
+            List<Long> batch = pending.keySet().stream()
+                    .limit(MAX_BATCH_SIZE)
+                    .collect(Collectors.toCollection(ArrayList::new));
+
+            Map<Long, Member> found;
+            try {
+                found = memberJpaRepository.findAllById(batch).stream()
+                        .collect(Collectors.toMap(Member::getId, Function.identity()));
+            } catch (RuntimeException e) {
+                batch.forEach(id -> pending.remove(id).completeExceptionally(e));
+                throw e;
+            }
+
+            for (Long id : batch) {
+                Optional<Member> result = Optional.ofNullable(found.get(id));
+                memo.put(id, result);
+                pending.remove(id).complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.StatementOptions;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * 숫자 컬럼 하나를 박싱 없이 ResultSet 에서 바로 int / long 으로 읽는다. 통계용으로 수백만 건을 읽을 때 쓴다.
+ * <p>
+ * 배열 API 는 FETCH_SIZE 단위로 읽으며 배열을 늘린다. 스트림 API 는 한 행씩 넘기므로 호출자의 트랜잭션 안에서 try-with-resources 로 닫아야 한다.
+ * 기본 데이터소스만 읽으므로 샤딩이 켜져 있으면 쓸 수 없다. 검색 엔진 설정과 상관없이 querydsl.columns.enabled 로 켜고 끈다.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.columns.enabled", havingValue = "true", matchIfMissing = true)
+@Transactional(readOnly = true)
+public class MemberColumnRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final SQLQueryFactory queryFactory;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    private final ObjectProvider<MemberShards> shards;
+
+    public int[] ages(MemberSearchCondition condition) {
+        return fetchInts(member.age, condition);
+    }
+
+    public long[] ids(MemberSearchCondition condition) {
+        return fetchLongs(member.memberId, condition);
+    }
+
+    public int[] fetchInts(Expression<? extends Number> column, MemberSearchCondition condition) {
+        try (ResultSet rs = results(column, condition)) {
+            int[] values = new int[FETCH_SIZE];
+            int size = 0;
+            while (rs.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, values.length + Math.max(FETCH_SIZE, values.length >> 1));
+                }
+                values[size++] = rs.getInt(1);
+            }
+            return Arrays.copyOf(values, size);
+        } catch (SQLException e) {
+            throw queryFactory.getConfiguration().translate(e);
+        }
+    }
+
+    public long[] fetchLongs(Expression<? extends Number> column, MemberSearchCondition condition) {
+        try (ResultSet rs = results(column, condition)) {
+            long[] values = new long[FETCH_SIZE];
+            int size = 0;
+            while (rs.next()) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, values.length + Math.max(FETCH_SIZE, values.length >> 1));
+                }
+                values[size++] = rs.getLong(1);
+            }
+            return Arrays.copyOf(values, size);
+        } catch (SQLException e) {
+            throw queryFactory.getConfiguration().translate(e);
+        }
+    }
+
+    /**
+     * 스트림을 닫으면 ResultSet 과 Statement 도 닫힌다.
+     * 이 메서드의 트랜잭션이 끝나면 커넥션이 반납되어 스트림을 읽을 수 없으므로 호출자의 트랜잭션이 있어야 한다
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public IntStream streamInts(Expression<? extends Number> column, MemberSearchCondition condition) {
+        ResultSet rs = results(column, condition);
+        Spliterator.OfInt spliterator = new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(rs.getInt(1));
+                    return true;
+                } catch (SQLException e) {
+                    throw queryFactory.getConfiguration().translate(e);
+                }
+            }
+        };
+        return StreamSupport.intStream(spliterator, false).onClose(() -> close(rs));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public LongStream streamLongs(Expression<? extends Number> column, MemberSearchCondition condition) {
+        ResultSet rs = results(column, condition);
+        Spliterator.OfLong spliterator = new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(rs.getLong(1));
+                    return true;
+                } catch (SQLException e) {
+                    throw queryFactory.getConfiguration().translate(e);
+                }
+            }
+        };
+        return StreamSupport.longStream(spliterator, false).onClose(() -> close(rs));
+    }
+
+    private ResultSet results(Expression<? extends Number> column, MemberSearchCondition condition) {
+        if (shards.getIfAvailable() != null) {
+            throw new UnroutedShardAccessException("MemberColumnRepository");
+        }
+        SQLQuery<? extends Number> query = queryFactory.select(column).from(member);
+        // team 조건이 없으면 조인하지 않는다
+        if (hasText(condition.getTeamName())) {
+            query.join(team).on(member.teamId.eq(team.teamId));
+        }
+        query.where(usernameEq(condition.getUsername()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe()));
+        query.setStatementOptions(StatementOptions.builder().setFetchSize(FETCH_SIZE).build());
+        return query.getResults();
+    }
+
+    private void close(ResultSet rs) {
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            throw queryFactory.getConfiguration().translate(e);
+        }
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null ;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null ;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null ;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null ;
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.support.TableVersions;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 회원 나이 증감을 메모리에 모았다가 주기적으로 한 번에 반영한다.
+ * <p>
+ * 증감은 회원별 {@link LongAdder} 에 더해지므로 같은 회원을 여러 스레드가 동시에 올려도 행 락을 기다리지 않는다.
+ * flush 는 버퍼를 새 것으로 바꾼 뒤, 이전 버퍼의 합계를 update member set age = age + ? 배치 하나로 커밋한다.
+ * <p>
+ * 내구성: 반영되지 않은 증감은 메모리에만 있다. 프로세스가 비정상 종료되면 마지막 flush 이후
+ * 최대 querydsl.counter.flush-interval-ms 만큼의 증감을 잃는다. 정상 종료 시에는 {@link #shutdown()} 에서 남은 증감을 반영한다.
+ * flush 가 실패하면 합계를 다음 버퍼로 되돌려 다음 주기에 다시 시도한다.
+ * 반영 전까지 조회 결과의 age 에는 보이지 않는다.
+ * <p>
+ * 샤딩이 켜져 있으면 회원 id 의 샤드별로 나눠 샤드마다 커밋한다. 실패한 샤드의 합계만 되돌린다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberCounterBuffer {
+
+    // 나이 증감도 활동이므로 last_active_at 을 갱신한다 (MemberArchiver)
+    private static final String ADD_AGE = "update member set age = age + ?, last_active_at = ? where member_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TableVersions tableVersions;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    private final ObjectProvider<MemberShards> shards;
+
+    private volatile Buffer current = new Buffer();
+
+    public void addAge(Long memberId, long delta) {
+        while (true) {
+            Buffer buffer = current;
+            buffer.writers.increment();
+            try {
+                // flush 가 그 사이 버퍼를 바꿨으면 새 버퍼에 다시 더한다
+                if (buffer == current) {
+                    buffer.adder(memberId).add(delta);
+                    return;
+                }
+            } finally {
+                buffer.writers.decrement();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.counter.flush-interval-ms:1000}")
+    public synchronized int flush() {
+        Buffer flushing = current;
+        current = new Buffer();
+        // 이전 버퍼에 더하고 있던 스레드가 끝날 때까지 기다린다
+        while (flushing.writers.sum() != 0) {
+            Thread.onSpinWait();
+        }
+
+        List<Object[]> updates = new ArrayList<>(flushing.deltas.size());
+        LocalDateTime now = LocalDateTime.now();
+        flushing.deltas.forEach((memberId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                updates.add(new Object[]{delta, now, memberId});
+            }
+        });
+        if (updates.isEmpty()) {
+            return 0;
+        }
+
+        MemberShards memberShards = shards.getIfAvailable();
+        if (memberShards == null) {
+            return write(updates, () -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(ADD_AGE, updates);
+                tableVersions.markWritten(TableVersions.MEMBER);
+            }));
+        }
+
+        // 어느 샤드의 대역에도 없는 id 는 없는 회원이다
+        Map<Integer, List<Object[]>> updatesByShard = updates.stream()
+                .filter(update -> memberShards.shardOfMember((Long) update[2]) >= 0)
+                .collect(Collectors.groupingBy(update -> memberShards.shardOfMember((Long) update[2])));
+        int flushed = 0;
+        for (Map.Entry<Integer, List<Object[]>> entry : updatesByShard.entrySet()) {
+            List<Object[]> shardUpdates = entry.getValue();
+            flushed += write(shardUpdates, () -> memberShards.write(entry.getKey(), em -> {
+                em.unwrap(Session.class).doWork(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(ADD_AGE)) {
+                        for (Object[] update : shardUpdates) {
+                            statement.setLong(1, (Long) update[0]);
+                            statement.setObject(2, update[1]);
+                            statement.setLong(3, (Long) update[2]);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                });
+                tableVersions.markWritten(TableVersions.MEMBER);
+                return null;
+            }));
+        }
+        return flushed;
+    }
+
+    // 실패하면 합계를 다음 버퍼로 되돌린다
+    private int write(List<Object[]> updates, Runnable commit) {
+        try {
+            commit.run();
+        } catch (RuntimeException e) {
+            log.warn("failed to flush {} member counters, retrying next round: {}", updates.size(), e.getMessage());
+            updates.forEach(update -> addAge((Long) update[2], (Long) update[0]));
+            return 0;
+        }
+        return updates.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int flushed = flush();
+        log.info("flushed {} member counters on shutdown", flushed);
+    }
+
+    private static class Buffer {
+
+        private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+        private final LongAdder writers = new LongAdder();
+
+        private LongAdder adder(Long memberId) {
+            LongAdder adder = deltas.get(memberId);
+            return adder != null ? adder : deltas.computeIfAbsent(memberId, id -> new LongAdder());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.sql.SMember;
+import study.querydsl.sql.STeam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * fields= 로 요청한 MemberTeamDto 속성만 select 하는 프로젝션을 만든다.
+ * <p>
+ * teamId 는 member 의 FK 컬럼으로 읽으므로, teamName 을 요청하거나 teamName 으로 거르거나 정렬할 때만 team 을 조인하면 된다.
+ * fields 가 비어 있으면 지금까지처럼 전체 속성을 읽는다.
+ */
+public final class MemberFields {
+
+    public static final Set<String> ALL = Set.of("memberId", "username", "age", "teamId", "teamName");
+
+    private static final Map<String, Expression<?>> JPA = Map.of(
+            "memberId", member.id.as("memberId"),
+            "username", member.username,
+            "age", member.age,
+            "teamId", member.team.id.as("teamId"),
+            "teamName", team.name.as("teamName"));
+
+    private static final Map<String, Expression<?>> SQL = Map.of(
+            "memberId", SMember.member.memberId.as("memberId"),
+            "username", SMember.member.username,
+            "age", SMember.member.age,
+            "teamId", SMember.member.teamId.as("teamId"),
+            "teamName", STeam.team.name.as("teamName"));
+
+    private MemberFields() {
+    }
+
+    public static Expression<MemberTeamDto> projection(Set<String> fields) {
+        if (isAll(fields)) {
+            return new QMemberTeamDto(
+                    member.id.as("memberId"),
+                    member.username,
+                    member.age,
+                    team.id.as("teamId"),
+                    team.name.as("teamName"));
+        }
+        return Projections.bean(MemberTeamDto.class, select(fields, JPA));
+    }
+
+    public static Expression<MemberTeamDto> sqlProjection(Set<String> fields) {
+        if (isAll(fields)) {
+            return new QMemberTeamDto(
+                    SMember.member.memberId.as("memberId"),
+                    SMember.member.username,
+                    SMember.member.age,
+                    STeam.team.teamId.as("teamId"),
+                    STeam.team.name.as("teamName"));
+        }
+        return Projections.bean(MemberTeamDto.class, select(fields, SQL));
+    }
+
+    /**
+     * @param filtersByTeamName teamName 조건을 team.name 으로 거르면 true (TeamNameDictionary 로 team_id 로 바꿨으면 false)
+     */
+    public static boolean needsTeamJoin(MemberSearchCondition condition, Sort sort, boolean filtersByTeamName) {
+        return isAll(condition.getFields())
+                || condition.getFields().contains("teamName")
+                || filtersByTeamName
+                || sort.getOrderFor("teamName") != null;
+    }
+
+    /**
+     * fields= 를 지원하지 않는 경로에서 요청하면 {@link UnsupportedFieldException}
+     */
+    public static void rejectFields(MemberSearchCondition condition, String path) {
+        if (!isAll(condition.getFields())) {
+            throw new UnsupportedFieldException(condition.getFields(), path);
+        }
+    }
+
+    private static boolean isAll(Set<String> fields) {
+        return fields == null || fields.isEmpty();
+    }
+
+    private static Expression<?>[] select(Set<String> fields, Map<String, Expression<?>> columns) {
+        List<Expression<?>> selected = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            Expression<?> column = columns.get(field);
+            if (column == null) {
+                throw new UnsupportedFieldException(field);
+            }
+            selected.add(column);
+        }
+        return selected.toArray(Expression[]::new);
+    }
+}
@@ -2,74 +2,219 @@ package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUtil;
 import jakarta.persistence.EntityManager;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.support.TeamNameDictionary;
+import study.querydsl.support.TeamNameDictionary.TeamFilter;
+import study.querydsl.support.UsernameBloomFilter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+/**
+ * DTO 검색은 readOnly 트랜잭션(FlushMode.MANUAL, 스냅샷 없음)으로 실행한다.
+ * 엔티티 조회는 호출자의 트랜잭션을 따른다. 호출자의 트랜잭션이 readOnly 일 때만 read-only 힌트로 읽어 스냅샷을 만들지 않는다.
+ * <p>
+ * 샤딩이 켜지면 저장과 조회를 {@link ShardedMemberRepository} 로 보낸다. 이때 조회한 엔티티는 준영속이다.
+ */
 @Repository
 public class MemberJpaRepository {
 
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final TeamNameDictionary teamNameDictionary;
+    // querydsl.username-filter.enabled=false 면 null
+    private final UsernameBloomFilter usernameFilter;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    private final ShardedMemberRepository shardedRepository;
 
-    public MemberJpaRepository(EntityManager em){
+    public MemberJpaRepository(EntityManager em, TeamNameDictionary teamNameDictionary,
+                               ObjectProvider<UsernameBloomFilter> usernameFilter,
+                               ObjectProvider<ShardedMemberRepository> shardedRepository){
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.teamNameDictionary = teamNameDictionary;
+        this.usernameFilter = usernameFilter.getIfAvailable();
+        this.shardedRepository = shardedRepository.getIfAvailable();
     }
 
 
+    /**
+     * 샤딩이 켜져 있으면 회원의 샤드에 바로 커밋하므로 호출자의 트랜잭션과 함께 롤백되지 않는다
+     */
     public void save(Member member){
+        if (shardedRepository != null) {
+            shardedRepository.save(member);
+            return;
+        }
         em.persist(member);
     }
 
+    /**
+     * 영속성 컨텍스트를 먼저 보므로 현재 트랜잭션에서 저장, 수정한 회원을 그대로 돌려준다.
+     * {@link MemberBatchLoader} 를 거치지 않는다. 로더는 요청 스코프라 요청 밖(배치, 스케줄러)에서 쓸 수 없고,
+     * 요청이 끝날 때까지 결과를 재사용하므로 쓰기 뒤의 조회에 이전 값을 돌려줄 수 있다.
+     * 한 요청에서 여러 id 를 읽을 때는 로더를 쓴다.
+     */
     public Optional<Member> findById(Long id){
+        if (shardedRepository != null) {
+            return shardedRepository.findById(id);
+        }
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    // team 을 함께 읽는다 (MemberBatchLoader)
+    public List<Member> findAllById(Collection<Long> ids){
+        if (shardedRepository != null) {
+            return shardedRepository.findAllById(ids);
+        }
+        return queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.id.in(ids))
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnlyTransaction())
+                .fetch();
+    }
+
     public List<Member> findAll(){
-        return em.createQuery("select m from Member m", Member.class).getResultList();
+        if (shardedRepository != null) {
+            return shardedRepository.findAll();
+        }
+        return em.createQuery("select m from Member m", Member.class)
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnlyTransaction())
+                .getResultList();
     }
 
     public List<Member> findAll_Querydsl(){
+        if (shardedRepository != null) {
+            return shardedRepository.findAll();
+        }
         return queryFactory
                 .selectFrom(member)
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnlyTransaction())
                 .fetch();
     }
 
     public List<Member> findByUsername(String username){
+        if (shardedRepository != null) {
+            return shardedRepository.findByUsername(username);
+        }
+        if (definitelyAbsent(username)) {
+            return List.of();
+        }
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username",username)
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnlyTransaction())
                 .getResultList();
     }
 
     public List<Member> findByUsername_Querydsl(String username){
+        if (shardedRepository != null) {
+            return shardedRepository.findByUsername(username);
+        }
+        if (definitelyAbsent(username)) {
+            return List.of();
+        }
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
+                .setHint(HibernateHints.HINT_READ_ONLY, readOnlyTransaction())
                 .fetch();
     }
 
+    /**
+     * 조건에 맞는 회원(team 포함)을 StatelessSession 으로 한 건씩 넘긴다. 대량 엔티티 스캔용.
+     * <p>
+     * 영속성 컨텍스트가 없어 1차 캐시, 스냅샷, flush 가 없고 메모리가 건수와 무관하다.
+     * 넘겨받은 엔티티는 준영속이며 지연 로딩할 수 없다. 자체 커넥션으로 읽으므로 진행 중인 트랜잭션의 변경은 보이지 않는다.
+     * 기본 데이터소스만 읽으므로 샤딩이 켜져 있으면 쓸 수 없다.
+     *
+     * @return 넘긴 건수
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long scan(MemberSearchCondition condition, Consumer<Member> action) {
+        if (shardedRepository != null) {
+            throw new UnroutedShardAccessException("MemberJpaRepository.scan");
+        }
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        // querydsl 의 HibernateQuery 는 Hibernate 5 API 라서 HQL 만 만들고 실행은 StatelessSession 에 맡긴다
+        JPQLQuery<Member> spec = new JPAQuery<Member>()
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(usernameEq(condition.getUsername()),
+                        hasText(condition.getTeamName()) ? team.name.eq(condition.getTeamName()) : null,
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(spec.getMetadata(), false, null);
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Query<Member> query = session.createQuery(serializer.toString(), Member.class)
+                    .setFetchSize(SCAN_FETCH_SIZE);
+            JPAUtil.setConstants(query, serializer.getConstants(), spec.getMetadata().getParams());
+
+            long count = 0;
+            try (ScrollableResults<Member> results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    action.accept(results.get());
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
+        if (shardedRepository != null) {
+            return shardedRepository.search(condition);
+        }
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return List.of();
+        }
+
         BooleanBuilder builder = new BooleanBuilder();
 
         if (hasText(condition.getUsername())) {
             builder.and(member.username.eq(condition.getUsername()));
         }
 
-        if (hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
+        if (teamFilter.isPresent()) {
+            builder.and(teamEq(teamFilter));
         }
 
         if(condition.getAgeGoe() != null){
@@ -80,20 +225,28 @@ public class MemberJpaRepository {
             builder.and(member.age.loe(condition.getAgeLoe()));
         }
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
+        // fields= 로 일부 속성만 요청하면 그 컬럼만 읽고, team 이 필요 없으면 조인도 뺀다
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(MemberFields.projection(condition.getFields()))
+                .from(member);
+        if (MemberFields.needsTeamJoin(condition, Sort.unsorted(), teamFilter.viaJoin())) {
+            query.leftJoin(member.team, team);
+        }
+        return query
                 .where(builder)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByWhere(MemberSearchCondition condition) {
+        if (shardedRepository != null) {
+            return shardedRepository.search(condition);
+        }
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return List.of();
+        }
+
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -104,18 +257,35 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
+                        teamEq(teamFilter),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
                 .fetch();
     }
 
+    // 수정할 엔티티를 읽을 수 있는 트랜잭션에서는 힌트를 주지 않는다
+    static boolean readOnlyTransaction() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // 필터에 없는 username 은 DB 에 묻지 않는다
+    private boolean definitelyAbsent(String username) {
+        return usernameFilter != null && usernameFilter.isDefinitelyAbsent(username);
+    }
+
     private BooleanExpression usernameEq(String username) {
         return hasText(username) ? member.username.eq(username) : null ;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null ;
+    // 사전을 믿을 수 있으면 조인한 team.name 대신 member 의 FK 로 거른다
+    private BooleanExpression teamEq(TeamFilter teamFilter) {
+        if (!teamFilter.isPresent()) {
+            return null;
+        }
+        if (teamFilter.viaJoin()) {
+            return team.name.eq(teamFilter.name());
+        }
+        return teamFilter.teamId() != null ? member.team.id.eq(teamFilter.teamId()) : Expressions.FALSE.isTrue();
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
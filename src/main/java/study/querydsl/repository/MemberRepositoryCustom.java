@@ -4,12 +4,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
 import java.util.List;
 
 public interface MemberRepositoryCustom {
 
+    // 없는 username 이면 UsernameBloomFilter 로 DB 조회 없이 빈 결과. readOnly 트랜잭션에서 부르면 read-only 엔티티다
+    List<Member> findByUsername(String username);
+
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions);
 }
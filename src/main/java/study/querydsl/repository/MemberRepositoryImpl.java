@@ -1,30 +1,63 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.support.TeamNameDictionary;
+import study.querydsl.support.TeamNameDictionary.TeamFilter;
+import study.querydsl.support.UsernameBloomFilter;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberArchive.memberArchive;
 import static study.querydsl.entity.QTeam.team;
 
+// DTO 검색은 모두 readOnly 트랜잭션(FlushMode.MANUAL, 스냅샷 없음)으로 실행한다
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  implements MemberRepositoryCustom{
 
     private final JPAQueryFactory queryFactory;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    private final ShardedMemberRepository shardedRepository;
+    // querydsl.search.engine=sql 일 때만 존재한다
+    private final MemberSqlRepository sqlRepository;
+    // querydsl.paging.total=window 일 때만 존재한다
+    private final MemberWindowPageRepository windowPageRepository;
+    // 이 offset 부터는 id 만 먼저 페이징한 뒤 조인한다 (deferred join)
+    private final long deferredJoinOffset;
+    private final TeamNameDictionary teamNameDictionary;
+    // querydsl.username-filter.enabled=false 면 null
+    private final UsernameBloomFilter usernameFilter;
 
 //    public MemberRepositoryImpl(EntityManager entityManager){
 //        super(Member.class);
@@ -32,12 +65,55 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
 //
 //    }
 
-    public MemberRepositoryImpl(EntityManager em){
+    public MemberRepositoryImpl(EntityManager em,
+                                ObjectProvider<ShardedMemberRepository> shardedRepository,
+                                ObjectProvider<MemberSqlRepository> sqlRepository,
+                                ObjectProvider<MemberWindowPageRepository> windowPageRepository,
+                                @Value("${querydsl.paging.deferred-join-offset:1000}") long deferredJoinOffset,
+                                TeamNameDictionary teamNameDictionary,
+                                ObjectProvider<UsernameBloomFilter> usernameFilter){
         this.queryFactory = new JPAQueryFactory(em);
+        this.shardedRepository = shardedRepository.getIfAvailable();
+        this.sqlRepository = sqlRepository.getIfAvailable();
+        this.windowPageRepository = windowPageRepository.getIfAvailable();
+        this.deferredJoinOffset = deferredJoinOffset;
+        this.teamNameDictionary = teamNameDictionary;
+        this.usernameFilter = usernameFilter.getIfAvailable();
+    }
+
+    // 엔티티 조회는 호출자의 트랜잭션을 따른다
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Member> findByUsername(String username) {
+        // 필터는 기본 데이터소스의 이름만 안다
+        if (shardedRepository != null) {
+            return shardedRepository.findByUsername(username);
+        }
+        if (usernameFilter != null && usernameFilter.isDefinitelyAbsent(username)) {
+            return List.of();
+        }
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.eq(username))
+                .setHint(HibernateHints.HINT_READ_ONLY, MemberJpaRepository.readOnlyTransaction())
+                .fetch();
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (shardedRepository != null) {
+            return shardedRepository.search(condition);
+        }
+        if (condition.isIncludeArchived()) {
+            MemberFields.rejectFields(condition, "includeArchived");
+            List<MemberTeamDto> result = new ArrayList<>(hotContentQuery(condition).fetch());
+            result.addAll(archivedContentQuery(condition).fetch());
+            return result;
+        }
+        if (sqlRepository != null) {
+            return sqlRepository.search(condition);
+        }
+
 //        EntityManager entityManager = getEntityManager();
 
 //        List<MemberTeamDto> result = from(member)
@@ -54,20 +130,30 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
 //                        team.name.as("teamName")))
 //                .fetch();
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return List.of();
+        }
+
+        return contentQuery(condition, teamFilter, Sort.unsorted())
+                .fetch();
+    }
+
+    /**
+     * fields 에 맞춘 프로젝션. team 이 필요 없으면 조인하지 않는다 (MemberFields)
+     */
+    private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition, TeamFilter teamFilter, Sort sort) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(MemberFields.projection(condition.getFields()))
+                .from(member);
+        if (MemberFields.needsTeamJoin(condition, sort, teamFilter.viaJoin())) {
+            query.leftJoin(member.team, team);
+        }
+        return query
                 .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
+                        teamEq(teamFilter),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch();
+                        ageLoe(condition.getAgeLoe()));
     }
 
     private BooleanExpression usernameEq(String username) {
@@ -78,6 +164,19 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
         return hasText(teamName) ? team.name.eq(teamName) : null ;
     }
 
+    /**
+     * 사전으로 팀 이름을 team_id 로 바꿔 member 의 FK 로 거른다. 사전을 믿을 수 없으면 조인한 team.name 으로 거른다.
+     */
+    private BooleanExpression teamEq(TeamFilter teamFilter) {
+        if (!teamFilter.isPresent()) {
+            return null;
+        }
+        if (teamFilter.viaJoin()) {
+            return team.name.eq(teamFilter.name());
+        }
+        return teamFilter.teamId() != null ? member.team.id.eq(teamFilter.teamId()) : Expressions.FALSE.isTrue();
+    }
+
     private BooleanExpression ageGoe(Integer ageGoe) {
         return ageGoe != null ? member.age.goe(ageGoe) : null ;
     }
@@ -88,19 +187,23 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
 
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+        MemberSort.validate(pageable.getSort());
+        if (shardedRepository != null) {
+            return shardedRepository.searchPageComplex(condition, pageable);
+        }
+        if (condition.isIncludeArchived()) {
+            return searchPageWithArchive(condition, pageable);
+        }
+        if (windowPageRepository != null) {
+            return windowPageRepository.searchPage(condition, pageable);
+        }
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return Page.empty(pageable);
+        }
+
+        QueryResults<MemberTeamDto> results = contentQuery(condition, teamFilter, pageable.getSort())
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -138,7 +241,149 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        MemberSort.validate(pageable.getSort());
+        if (shardedRepository != null) {
+            return shardedRepository.searchPageComplex(condition, pageable);
+        }
+        if (condition.isIncludeArchived()) {
+            return searchPageWithArchive(condition, pageable);
+        }
+        if (windowPageRepository != null) {
+            return windowPageRepository.searchPage(condition, pageable);
+        }
+        if (sqlRepository != null) {
+            return sqlRepository.searchPageComplex(condition, pageable);
+        }
+        // 내용, 건수, id 쿼리가 모두 같은 판단으로 거르도록 한 번만 정한다
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return Page.empty(pageable);
+        }
+
+        List<MemberTeamDto> content = pageable.getOffset() >= deferredJoinOffset
+                ? deferredJoinContent(condition, teamFilter, pageable)
+                : contentQuery(condition, teamFilter, pageable.getSort())
+                        .orderBy(MemberSort.orderBy(pageable.getSort()))
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch();
+
+        JPAQuery<Member> countQuery = queryFactory
+                .select(member)
+                .from(member);
+        // 건수는 team.name 으로 거를 때만 조인이 필요하다 (member -> team 은 다대일)
+        if (teamFilter.viaJoin()) {
+            countQuery.leftJoin(member.team, team);
+        }
+        countQuery
+                .where(usernameEq(condition.getUsername()),
+                        teamEq(teamFilter),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+
+//        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 깊은 offset 에서 조인한 넓은 행을 버리며 건너뛰지 않도록, 인덱스로 member.id 만 페이징한 뒤 그 id 들만 조인해서 읽는다.
+     */
+    private List<MemberTeamDto> deferredJoinContent(MemberSearchCondition condition, TeamFilter teamFilter, Pageable pageable) {
+        JPAQuery<Long> idQuery = queryFactory
+                .select(member.id)
+                .from(member);
+        // team.name 조건이나 정렬이 없으면 조인 없이 member 인덱스만으로 끝난다
+        if (teamFilter.viaJoin() || pageable.getSort().getOrderFor("teamName") != null) {
+            idQuery.leftJoin(member.team, team);
+        }
+        List<Long> ids = idQuery
+                .where(usernameEq(condition.getUsername()),
+                        teamEq(teamFilter),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, MemberTeamDto> rows = new HashMap<>(ids.size() * 2);
+        // 순서를 맞추려면 memberId 가 있어야 한다
+        Set<String> fields = condition.getFields();
+        if (fields != null && !fields.isEmpty() && !fields.contains("memberId")) {
+            fields = new HashSet<>(fields);
+            fields.add("memberId");
+        }
+        JPAQuery<MemberTeamDto> rowQuery = queryFactory
+                .select(MemberFields.projection(fields))
+                .from(member);
+        if (fields == null || fields.isEmpty() || fields.contains("teamName")) {
+            rowQuery.leftJoin(member.team, team);
+        }
+        for (MemberTeamDto row : rowQuery
+                .where(member.id.in(ids))
+                .fetch()) {
+            rows.put(row.getMemberId(), row);
+        }
+
+        // id 쿼리의 순서를 그대로 따른다. 그 사이 삭제된 회원은 빠진다
+        List<MemberTeamDto> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MemberTeamDto row = rows.get(id);
+            if (row != null) {
+                content.add(row);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * hot(member) 결과 뒤에 archive(member_archive) 결과를 이어 붙인 것처럼 페이징한다.
+     * 두 테이블을 합쳐 정렬하지 않으므로 정렬을 요청하면 {@link UnsupportedSortException}
+     */
+    private Page<MemberTeamDto> searchPageWithArchive(MemberSearchCondition condition, Pageable pageable) {
+        MemberFields.rejectFields(condition, "includeArchived");
+        if (pageable.getSort().isSorted()) {
+            throw new UnsupportedSortException(pageable.getSort(), "includeArchived");
+        }
+        long hotTotal = queryFactory
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .fetchOne();
+        long archivedTotal = queryFactory
+                .select(memberArchive.count())
+                .from(memberArchive)
+                .leftJoin(memberArchive.team, team)
+                .where(archivedWhere(condition))
+                .fetchOne();
+
+        List<MemberTeamDto> content = new ArrayList<>(pageable.getPageSize());
+        if (pageable.getOffset() < hotTotal) {
+            content.addAll(hotContentQuery(condition)
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .fetch());
+        }
+        int remaining = pageable.getPageSize() - content.size();
+        if (remaining > 0 && archivedTotal > 0) {
+            content.addAll(archivedContentQuery(condition)
+                    .offset(Math.max(0, pageable.getOffset() - hotTotal))
+                    .limit(remaining)
+                    .fetch());
+        }
+        return new PageImpl<>(content, pageable, hotTotal + archivedTotal);
+    }
+
+    private JPAQuery<MemberTeamDto> hotContentQuery(MemberSearchCondition condition) {
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -151,21 +396,115 @@ public class MemberRepositoryImpl /* extends QuerydslRepositorySupport */  imple
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+                .orderBy(member.id.asc());
+    }
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
+    private JPAQuery<MemberTeamDto> archivedContentQuery(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        memberArchive.id.as("memberId"),
+                        memberArchive.username,
+                        memberArchive.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(memberArchive)
+                .leftJoin(memberArchive.team, team)
+                .where(archivedWhere(condition))
+                .orderBy(memberArchive.id.asc());
+    }
+
+    private Predicate[] archivedWhere(MemberSearchCondition condition) {
+        return new Predicate[]{
+                hasText(condition.getUsername()) ? memberArchive.username.eq(condition.getUsername()) : null,
+                teamNameEq(condition.getTeamName()),
+                condition.getAgeGoe() != null ? memberArchive.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? memberArchive.age.loe(condition.getAgeLoe()) : null
+        };
+    }
+
+    /**
+     * 조건들을 OR 로 묶은 쿼리 한 번으로 조회하고, 결과 행을 조건별로 다시 나눈다.
+     * fields, includeArchived 처럼 이 쿼리가 지원하지 않는 조건과 샤딩된 검색은 조건마다 {@link #search(MemberSearchCondition)} 에 맡긴다.
+     */
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions) {
+        for (MemberSearchCondition condition : conditions) {
+            if (condition == null) {
+                throw new IllegalArgumentException("batch-search conditions must not contain null");
+            }
+        }
+
+        List<List<MemberTeamDto>> results = new ArrayList<>(conditions.size());
+        // 조건 순서대로의 팀 판단. 한 번 정한 것을 쿼리와 결과 나누기에 같이 쓴다
+        List<TeamFilter> teamFilters = new ArrayList<>(conditions.size());
+        BooleanBuilder anyOf = new BooleanBuilder();
+        for (MemberSearchCondition condition : conditions) {
+            if (!batchable(condition)) {
+                results.add(search(condition));
+                teamFilters.add(null);
+                continue;
+            }
+            results.add(new ArrayList<>());
+            TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+            teamFilters.add(teamFilter);
+            // 없는 팀이면 그 조건은 DB 에 묻지 않는다
+            if (!teamFilter.isUnknown()) {
+                anyOf.or(allOf(condition, teamFilter));
+            }
+        }
+        if (!anyOf.hasValue()) {
+            return results;
+        }
+
+        List<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .where(anyOf)
+                .fetch();
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        for (MemberTeamDto row : rows) {
+            for (int i = 0; i < conditions.size(); i++) {
+                TeamFilter teamFilter = teamFilters.get(i);
+                if (teamFilter != null && !teamFilter.isUnknown() && matches(conditions.get(i), teamFilter, row)) {
+                    results.get(i).add(row);
+                }
+            }
+        }
+        return results;
+    }
 
-//        return new PageImpl<>(content, pageable, total);
+    private boolean batchable(MemberSearchCondition condition) {
+        return shardedRepository == null
+                && !condition.isIncludeArchived()
+                && (condition.getFields() == null || condition.getFields().isEmpty());
+    }
+
+    private Predicate allOf(MemberSearchCondition condition, TeamFilter teamFilter) {
+        return ExpressionUtils.allOf(usernameEq(condition.getUsername()),
+                teamEq(teamFilter),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe()));
+    }
+
+    private static boolean matches(MemberSearchCondition condition, TeamFilter teamFilter, MemberTeamDto row) {
+        return (!hasText(condition.getUsername()) || condition.getUsername().equals(row.getUsername()))
+                && matchesTeam(teamFilter, row)
+                && (condition.getAgeGoe() == null || row.getAge() >= condition.getAgeGoe())
+                && (condition.getAgeLoe() == null || row.getAge() <= condition.getAgeLoe());
+    }
+
+    private static boolean matchesTeam(TeamFilter teamFilter, MemberTeamDto row) {
+        if (!teamFilter.isPresent()) {
+            return true;
+        }
+        return teamFilter.viaJoin()
+                ? Objects.equals(teamFilter.name(), row.getTeamName())
+                : Objects.equals(teamFilter.teamId(), row.getTeamId());
     }
 }
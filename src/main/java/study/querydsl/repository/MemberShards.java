@@ -0,0 +1,144 @@
+package study.querydsl.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * team_id 로 회원을 나눠 담는 샤드 목록. 샤드마다 데이터소스와 EntityManagerFactory 를 따로 가진다.
+ * <p>
+ * 회원은 floorMod(team_id, 샤드 수) 번째 샤드에, 팀 정보는 모든 샤드에 같은 id 로 복제해 둔다.
+ * 팀이 없는 회원은 0번 샤드에 둔다.
+ * <p>
+ * member_id 는 샤드마다 [샤드 번호 &lt;&lt; 40, (샤드 번호 + 1) &lt;&lt; 40) 대역에서 발급하므로 (ShardingConfig) 전역에서 유일하고,
+ * id 만으로 샤드를 찾을 수 있다 ({@link #shardOfMember(long)}).
+ * <p>
+ * {@link #readAsync} 는 모든 요청이 함께 쓰는 스레드 풀에서 실행한다. 스레드 수는 샤드 커넥션 풀 크기의 합이라
+ * 커넥션이 남아 있는 한 다른 요청의 조회 뒤에 줄 서지 않는다. 그보다 많은 스레드는 커넥션을 기다리기만 한다.
+ */
+public class MemberShards implements AutoCloseable {
+
+    private static final int MEMBER_ID_SHARD_SHIFT = 40;
+
+    private final List<LocalContainerEntityManagerFactoryBean> factories;
+    private final ExecutorService executor;
+
+    public MemberShards(List<LocalContainerEntityManagerFactoryBean> factories) {
+        this.factories = factories;
+        int threads = factories.stream().mapToInt(MemberShards::connections).sum();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "member-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 한가할 때는 스레드를 남겨 두지 않는다
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    private static int connections(LocalContainerEntityManagerFactoryBean factory) {
+        return factory.getDataSource() instanceof HikariDataSource dataSource
+                ? Math.max(1, dataSource.getMaximumPoolSize())
+                : 1;
+    }
+
+    public int size() {
+        return factories.size();
+    }
+
+    public int shardOf(Long teamId) {
+        return teamId == null ? 0 : (int) Math.floorMod(teamId, (long) factories.size());
+    }
+
+    /**
+     * 회원 id 가 발급된 샤드. 어느 샤드의 대역에도 없는 id 면 -1
+     */
+    public int shardOfMember(long memberId) {
+        long shard = memberId >>> MEMBER_ID_SHARD_SHIFT;
+        return memberId > 0 && shard < factories.size() ? (int) shard : -1;
+    }
+
+    /**
+     * 이 샤드가 발급하는 member_id 대역의 시작
+     */
+    public static long firstMemberId(int shard) {
+        return (long) shard << MEMBER_ID_SHARD_SHIFT;
+    }
+
+    public <T> T read(int shard, Function<EntityManager, T> work) {
+        EntityManager em = factory(shard).createEntityManager();
+        try {
+            return work.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    public <T> CompletableFuture<T> readAsync(int shard, Function<EntityManager, T> work) {
+        return CompletableFuture.supplyAsync(() -> read(shard, work), executor);
+    }
+
+    /**
+     * 샤드 트랜잭션 하나로 쓴다. 스프링 트랜잭션이 아니므로 TableVersions, UsernameBloomFilter 가 커밋 뒤의 처리를 걸 수 있게
+     * 트랜잭션 동기화가 없으면 직접 열고 커밋 결과를 알린다.
+     */
+    public <T> T write(int shard, Function<EntityManager, T> work) {
+        boolean synchronizing = !TransactionSynchronizationManager.isSynchronizationActive();
+        if (synchronizing) {
+            TransactionSynchronizationManager.initSynchronization();
+        }
+        EntityManager em = factory(shard).createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        int status = TransactionSynchronization.STATUS_ROLLED_BACK;
+        try {
+            tx.begin();
+            T result = work.apply(em);
+            tx.commit();
+            status = TransactionSynchronization.STATUS_COMMITTED;
+            if (synchronizing) {
+                TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+            if (synchronizing) {
+                List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                TransactionSynchronizationManager.clearSynchronization();
+                TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+            }
+        }
+    }
+
+    private EntityManagerFactory factory(int shard) {
+        return factories.get(shard).getNativeEntityManagerFactory();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (LocalContainerEntityManagerFactoryBean factory : factories) {
+            factory.destroy();
+            if (factory.getDataSource() instanceof HikariDataSource dataSource) {
+                dataSource.close();
+            }
+        }
+    }
+}
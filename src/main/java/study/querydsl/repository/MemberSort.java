@@ -0,0 +1,127 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.sql.SMember;
+import study.querydsl.sql.STeam;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색의 {@link Sort} 를 Querydsl OrderSpecifier 로 바꾼다.
+ * <p>
+ * 인덱스가 있는 속성(username, age, teamName) 하나로만 정렬할 수 있다. 여러 속성을 덮는 복합 인덱스는 없으므로 두 속성 이상은 거절한다.
+ * 같은 값끼리 순서가 흔들리지 않도록 항상 member.id 를 마지막에 붙이며, (속성, member_id) 인덱스를 한 방향으로 읽도록
+ * 마지막 정렬과 같은 방향으로 붙인다.
+ */
+public final class MemberSort {
+
+    public static final Set<String> SORTABLE = Set.of("username", "age", "teamName");
+
+    private static final Map<String, ComparableExpressionBase<?>> JPA = Map.of(
+            "username", member.username,
+            "age", member.age,
+            "teamName", team.name);
+
+    private static final Map<String, ComparableExpressionBase<?>> SQL = Map.of(
+            "username", SMember.member.username,
+            "age", SMember.member.age,
+            "teamName", STeam.team.name);
+
+    private static final Map<String, Function<MemberTeamDto, Comparable<?>>> DTO = Map.of(
+            "username", MemberTeamDto::getUsername,
+            "age", MemberTeamDto::getAge,
+            "teamName", MemberTeamDto::getTeamName);
+
+    private MemberSort() {
+    }
+
+    /**
+     * 허용되지 않는 속성이 있거나 두 속성 이상으로 정렬하면 {@link UnsupportedSortException}
+     */
+    public static void validate(Sort sort) {
+        if (sort.stream().count() > 1) {
+            throw new UnsupportedSortException(sort, "the member indexes, sort by a single property");
+        }
+        for (Sort.Order order : sort) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                throw new UnsupportedSortException(order.getProperty());
+            }
+        }
+    }
+
+    public static OrderSpecifier<?>[] orderBy(Sort sort) {
+        return toOrderSpecifiers(sort, JPA, member.id);
+    }
+
+    public static OrderSpecifier<?>[] orderBySql(Sort sort) {
+        return toOrderSpecifiers(sort, SQL, SMember.member.memberId);
+    }
+
+    /**
+     * {@link #orderBy(Sort)} 와 같은 순서의 Comparator. 샤드마다 정렬해 읽은 결과를 합칠 때 쓴다.
+     * null 순서를 정하지 않았으면 H2 처럼 null 을 가장 작은 값으로 본다.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Comparator<MemberTeamDto> comparator(Sort sort) {
+        Comparator<MemberTeamDto> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Function<MemberTeamDto, Comparable<?>> property = DTO.get(order.getProperty());
+            if (property == null) {
+                throw new UnsupportedSortException(order.getProperty());
+            }
+            Comparator<Comparable> values = order.isAscending() ? Comparator.naturalOrder() : Comparator.reverseOrder();
+            boolean nullsFirst = switch (order.getNullHandling()) {
+                case NULLS_FIRST -> true;
+                case NULLS_LAST -> false;
+                case NATIVE -> order.isAscending();
+            };
+            Comparator<Comparable> withNulls = nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+            comparator = comparator.thenComparing(row -> (Comparable) property.apply(row), withNulls);
+        }
+        Comparator<MemberTeamDto> byId = Comparator.comparing(MemberTeamDto::getMemberId);
+        return comparator.thenComparing(tieBreakerAscending(sort) ? byId : byId.reversed());
+    }
+
+    private static OrderSpecifier<?>[] toOrderSpecifiers(Sort sort, Map<String, ComparableExpressionBase<?>> columns,
+                                                        ComparableExpressionBase<Long> tieBreaker) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> column = columns.get(order.getProperty());
+            if (column == null) {
+                throw new UnsupportedSortException(order.getProperty());
+            }
+            orders.add(new OrderSpecifier<>(order.isAscending() ? Order.ASC : Order.DESC, column, nullHandling(order)));
+        }
+        orders.add(tieBreakerAscending(sort) ? tieBreaker.asc() : tieBreaker.desc());
+        return orders.toArray(OrderSpecifier[]::new);
+    }
+
+    // 정렬이 없으면 member.id 오름차순
+    private static boolean tieBreakerAscending(Sort sort) {
+        Sort.Order last = null;
+        for (Sort.Order order : sort) {
+            last = order;
+        }
+        return last == null || last.isAscending();
+    }
+
+    private static OrderSpecifier.NullHandling nullHandling(Sort.Order order) {
+        return switch (order.getNullHandling()) {
+            case NULLS_FIRST -> OrderSpecifier.NullHandling.NullsFirst;
+            case NULLS_LAST -> OrderSpecifier.NullHandling.NullsLast;
+            case NATIVE -> OrderSpecifier.NullHandling.Default;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.support.TeamNameDictionary;
+import study.querydsl.support.TeamNameDictionary.TeamFilter;
+
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * querydsl-sql 로 JDBC 에 직접 질의하는 검색 구현.
+ * <p>
+ * JPQL 변환과 영속성 컨텍스트를 거치지 않는다. querydsl.search.engine=sql 일 때 {@link MemberRepositoryImpl} 가 위임한다.
+ * teamName 조건은 {@link MemberRepositoryImpl} 처럼 {@link TeamNameDictionary} 로 member.team_id 를 거른다.
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+@ConditionalOnProperty(name = "querydsl.search.engine", havingValue = "sql")
+public class MemberSqlRepository {
+
+    private final SQLQueryFactory queryFactory;
+    private final TeamNameDictionary teamNameDictionary;
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return List.of();
+        }
+        return contentQuery(condition, teamFilter, Sort.unsorted())
+                .fetch();
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        TeamFilter teamFilter = teamNameDictionary.resolve(condition.getTeamName());
+        if (teamFilter.isUnknown()) {
+            return Page.empty(pageable);
+        }
+        List<MemberTeamDto> content = contentQuery(condition, teamFilter, pageable.getSort())
+                .orderBy(MemberSort.orderBySql(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        SQLQuery<Long> countQuery = queryFactory
+                .select(Wildcard.count)
+                .from(member);
+        if (teamFilter.viaJoin()) {
+            countQuery.leftJoin(team).on(member.teamId.eq(team.teamId));
+        }
+        countQuery
+                .where(usernameEq(condition.getUsername()),
+                        teamEq(teamFilter),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    private SQLQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition, TeamFilter teamFilter, Sort sort) {
+        SQLQuery<MemberTeamDto> query = queryFactory
+                .select(MemberFields.sqlProjection(condition.getFields()))
+                .from(member);
+        if (MemberFields.needsTeamJoin(condition, sort, teamFilter.viaJoin())) {
+            query.leftJoin(team).on(member.teamId.eq(team.teamId));
+        }
+        return query
+                .where(usernameEq(condition.getUsername()),
+                        teamEq(teamFilter),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null ;
+    }
+
+    // 사전을 믿을 수 없으면 조인한 team.name 으로 거른다
+    private BooleanExpression teamEq(TeamFilter teamFilter) {
+        if (!teamFilter.isPresent()) {
+            return null;
+        }
+        if (teamFilter.viaJoin()) {
+            return team.name.eq(teamFilter.name());
+        }
+        return teamFilter.teamId() != null ? member.teamId.eq(teamFilter.teamId()) : Expressions.FALSE.isTrue();
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null ;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null ;
+    }
+}
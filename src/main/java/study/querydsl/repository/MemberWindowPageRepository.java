@@ -0,0 +1,162 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.sql.SMember.member;
+import static study.querydsl.sql.STeam.team;
+
+/**
+ * 페이지 내용과 전체 건수를 COUNT(*) OVER() 로 한 번에 읽는다. querydsl.paging.total=window 일 때 {@link MemberRepositoryImpl} 가 위임한다.
+ * <p>
+ * 윈도 함수를 지원하지 않는 DB 면 기동할 때 알아채고 내용 + count 두 쿼리로 돌아간다.
+ * 확인 쿼리는 호출자의 트랜잭션을 깨뜨리지 않도록 별도 트랜잭션(커넥션)에서 실행한다.
+ */
+@Slf4j
+@Repository
+@Transactional(readOnly = true)
+@ConditionalOnProperty(name = "querydsl.paging.total", havingValue = "window")
+public class MemberWindowPageRepository {
+
+    private final SQLQueryFactory queryFactory;
+    private final TransactionTemplate probeTransaction;
+
+    // null 이면 아직 확인 전
+    private volatile Boolean windowSupported;
+
+    public MemberWindowPageRepository(SQLQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.probeTransaction = new TransactionTemplate(transactionManager);
+        this.probeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.probeTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void probe() {
+        try {
+            windowSupported();
+        } catch (DataAccessException e) {
+            // DB 에 닿지 못했으면 첫 검색 때 다시 확인한다
+            log.warn("could not check COUNT(*) OVER() support at startup: {}", e.getMessage());
+        }
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        if (!windowSupported()) {
+            return searchPageTwoQueries(condition, pageable);
+        }
+
+        Expression<MemberTeamDto> row = MemberFields.sqlProjection(condition.getFields());
+        // OFFSET/LIMIT 은 윈도 함수 계산 뒤에 적용되므로 모든 행에 필터 후 전체 건수가 실린다
+        List<Tuple> tuples = filtered(queryFactory.select(row, SQLExpressions.count().over()), condition)
+                .orderBy(MemberSort.orderBySql(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        if (tuples.isEmpty()) {
+            // 마지막 페이지를 넘어가면 건수를 실어 올 행이 없다
+            return pageable.getOffset() == 0
+                    ? new PageImpl<>(List.of(), pageable, 0)
+                    : new PageImpl<>(List.of(), pageable, count(condition));
+        }
+
+        List<MemberTeamDto> content = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            content.add(tuple.get(row));
+        }
+        Long total = tuples.get(0).get(1, Long.class);
+        return new PageImpl<>(content, pageable, total != null ? total : content.size());
+    }
+
+    private Page<MemberTeamDto> searchPageTwoQueries(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = filtered(queryFactory
+                .select(MemberFields.sqlProjection(condition.getFields())), condition)
+                .orderBy(MemberSort.orderBySql(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(condition));
+    }
+
+    private long count(MemberSearchCondition condition) {
+        Long count = filtered(queryFactory.select(Wildcard.count), condition).fetchOne();
+        return count != null ? count : 0L;
+    }
+
+    private <T> SQLQuery<T> filtered(SQLQuery<T> query, MemberSearchCondition condition) {
+        return query
+                .from(member)
+                .leftJoin(team).on(member.teamId.eq(team.teamId))
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()));
+    }
+
+    private boolean windowSupported() {
+        Boolean supported = windowSupported;
+        if (supported == null) {
+            supported = probeTransaction.execute(status -> probeWindow());
+            windowSupported = supported;
+        }
+        return supported;
+    }
+
+    // 문법 오류만 미지원으로 본다. 연결 실패 같은 다른 오류는 그대로 던져 다음에 다시 확인한다
+    private boolean probeWindow() {
+        try {
+            queryFactory.select(SQLExpressions.count().over())
+                    .from(team)
+                    .where(Expressions.FALSE.isTrue())
+                    .fetch();
+            return true;
+        } catch (BadSqlGrammarException e) {
+            log.warn("COUNT(*) OVER() is not supported, falling back to a separate count query: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null ;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null ;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null ;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null ;
+    }
+}
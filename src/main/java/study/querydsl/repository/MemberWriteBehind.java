@@ -0,0 +1,206 @@
+package study.querydsl.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberCreateRequest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 회원 생성 요청을 큐에 모았다가 백그라운드 스레드가 배치 단위로 insert 하고 커밋한다 (group commit).
+ * <p>
+ * 배치는 max-batch-size 개가 모이거나 첫 요청 후 linger-ms 가 지나면 커밋된다.
+ * 각 요청의 future 는 그 요청이 들어간 배치가 커밋된 뒤에 완료된다.
+ * 큐가 가득 차면 {@link RejectedExecutionException} 을 던진다.
+ * <p>
+ * 종료할 때는 큐에 남은 요청까지 커밋한다. shutdown-timeout-ms 안에 끝내지 못하면 writer 를 중단하고,
+ * 아직 커밋을 시작하지 않은 요청의 future 를 예외로 완료한다. 커밋 중이던 배치의 future 는 그 커밋의 결과대로 완료된다.
+ * 종료 뒤의 submit 은 거절한다.
+ * <p>
+ * 샤딩이 켜져 있으면 배치를 샤드별로 나눠 샤드마다 커밋한다.
+ */
+@Slf4j
+@Component
+public class MemberWriteBehind {
+
+    private final BlockingQueue<PendingMember> queue;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long shutdownTimeoutMillis;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+    // querydsl.sharding.enabled=true 일 때만 존재한다
+    @Autowired(required = false)
+    private ShardedMemberRepository shardedRepository;
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public MemberWriteBehind(TransactionTemplate transactionTemplate,
+                             @Value("${querydsl.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${querydsl.write-behind.max-batch-size:100}") int maxBatchSize,
+                             @Value("${querydsl.write-behind.linger-ms:5}") long lingerMillis,
+                             @Value("${querydsl.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::writeLoop, "member-write-behind");
+        writer.start();
+    }
+
+    public CompletableFuture<Long> submit(MemberCreateRequest request) {
+        PendingMember pending = new PendingMember(request, new CompletableFuture<>());
+        if (!running) {
+            throw new RejectedExecutionException("member write-behind is stopped");
+        }
+        if (!queue.offer(pending)) {
+            throw new RejectedExecutionException("member write queue is full");
+        }
+        // offer 와 stop 이 엇갈렸으면 writer 도 stop 의 정리도 이 요청을 못 볼 수 있다. 아직 큐에 있으면 거절한다
+        if (!running && queue.remove(pending)) {
+            throw new RejectedExecutionException("member write-behind is stopped");
+        }
+        return pending.future();
+    }
+
+    private void writeLoop() {
+        List<PendingMember> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                collect(batch);
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop 이 종료 시간을 넘겨 중단했다. 모으던 배치와 큐에 남은 요청은 커밋하지 않고 끝낸다
+            running = false;
+            queue.drainTo(batch);
+            fail(batch);
+        }
+    }
+
+    private void collect(List<PendingMember> batch) throws InterruptedException {
+        PendingMember first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            PendingMember next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingMember> batch) {
+        if (shardedRepository != null) {
+            Map<Integer, List<PendingMember>> byShard = batch.stream()
+                    .collect(Collectors.groupingBy(pending -> shardedRepository.shardOf(pending.request().getTeamId())));
+            // 샤드마다 따로 커밋하므로, 한 샤드가 실패해도 다른 샤드에 커밋된 요청을 다시 넣지 않는다
+            byShard.forEach((shard, requests) -> commit(requests, () -> shardedRepository.saveAll(shard,
+                    requests.stream().map(PendingMember::request).toList())));
+            return;
+        }
+        commit(batch, () -> transactionTemplate.execute(status -> insert(batch)));
+    }
+
+    private void commit(List<PendingMember> batch, Supplier<List<Member>> insert) {
+        try {
+            List<Member> members = insert.get();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(members.get(i).getId());
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            // 한 건 때문에 배치 전체가 실패하지 않도록 한 건씩 다시 커밋한다
+            log.warn("member batch of {} failed, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingMember pending : batch) {
+                commit(List.of(pending));
+            }
+        }
+    }
+
+    private List<Member> insert(List<PendingMember> batch) {
+        List<Member> members = new ArrayList<>(batch.size());
+        for (PendingMember pending : batch) {
+            MemberCreateRequest request = pending.request();
+            Member member = new Member(request.getUsername(), request.getAge());
+            if (request.getTeamId() != null) {
+                // 연관관계 주인(FK)만 세팅해 team.members 를 건드리지 않는다
+                member.setTeam(em.getReference(Team.class, request.getTeamId()));
+            }
+            em.persist(member);
+            members.add(member);
+        }
+        em.flush();
+        return members;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            // writer 는 큐가 빌 때까지 커밋한 뒤 끝난다
+            writer.join(shutdownTimeoutMillis);
+            if (writer.isAlive()) {
+                log.warn("member write-behind did not finish in {} ms, failing the remaining requests", shutdownTimeoutMillis);
+                writer.interrupt();
+                // 커밋 중이던 배치는 writer 가 커밋 결과대로 완료한다
+                writer.join(shutdownTimeoutMillis);
+            }
+        }
+
+        // writer 가 끝난 뒤에도 남은 요청. writer 가 커밋에 묶여 있으면 먼저 가져간 쪽이 완료한다
+        List<PendingMember> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        fail(remaining);
+    }
+
+    private static void fail(List<PendingMember> pendings) {
+        RejectedExecutionException stopped = new RejectedExecutionException("member write-behind stopped before commit");
+        pendings.forEach(pending -> pending.future().completeExceptionally(stopped));
+    }
+
+    private record PendingMember(MemberCreateRequest request, CompletableFuture<Long> future) {
+    }
+}
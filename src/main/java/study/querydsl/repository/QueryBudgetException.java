@@ -0,0 +1,16 @@
+package study.querydsl.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * {@link GuardedMemberPredicateExecutor} 의 제한이나 샤드 병합 페이징의 깊이 제한({@link ShardedMemberRepository})을 넘는 조회.
+ * 조건을 좁혀서 다시 요청해야 한다.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class QueryBudgetException extends RuntimeException {
+
+    public QueryBudgetException(String message) {
+        super(message);
+    }
+}
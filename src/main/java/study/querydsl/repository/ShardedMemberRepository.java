@@ -0,0 +1,349 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberCreateRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * {@link MemberShards} 위에서 동작하는 회원 저장/검색. 샤딩이 켜지면 MemberJpaRepository, MemberRepository,
+ * MemberWriteBehind, MemberCounterBuffer 가 회원 읽기/쓰기를 여기로 보낸다.
+ * <p>
+ * teamName 조건이 있으면 그 팀이 있는 샤드만 조회하고, 없으면 모든 샤드를 병렬로 조회해 병합한다.
+ * 샤드마다 {@link MemberSort#orderBy(Sort)} 로 정렬해 읽고 같은 순서의 {@link MemberSort#comparator(Sort)} 로 합친다.
+ * member_id 는 샤드별 대역에서 발급되므로 전역에서 유일하고 id 로 샤드를 찾는다 ({@link MemberShards#shardOfMember(long)}).
+ * 조회한 엔티티는 준영속이며 team 을 함께 읽어 둔다.
+ * <p>
+ * 쓰기는 샤드의 트랜잭션으로 바로 커밋한다. 호출자의 스프링 트랜잭션에 참여하지 않으므로 호출자가 롤백해도 남는다.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.sharding.enabled", havingValue = "true")
+public class ShardedMemberRepository {
+
+    // 0번 샤드가 팀 id 를 발급하고, 나머지 샤드에 같은 id 로 복제한다
+    private static final int TEAM_DIRECTORY = 0;
+    // 페이징은 샤드마다 offset + size 개를 읽으므로 깊은 페이지는 샤드 수 x offset 만큼 읽는다
+    static final long MAX_PAGE_END = 10_000;
+
+    private final MemberShards shards;
+
+    /**
+     * 샤드 사이에는 분산 트랜잭션이 없다. 복제 중 한 샤드라도 실패하면 이미 쓴 샤드에서 팀을 지우고 예외를 던진다.
+     * 보상 삭제까지 실패하면 그 샤드에 팀이 남을 수 있으며, 같은 id 로 다시 복제해도 덮어쓰므로 재시도하면 된다.
+     */
+    public Team saveTeam(String name) {
+        Team saved = shards.write(TEAM_DIRECTORY, em -> {
+            Team team = new Team(name);
+            em.persist(team);
+            return team;
+        });
+        List<Integer> written = new ArrayList<>(shards.size());
+        written.add(TEAM_DIRECTORY);
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (shard == TEAM_DIRECTORY) {
+                    continue;
+                }
+                shards.write(shard, em -> em.createNativeQuery("merge into team (team_id, name) key (team_id) values (?, ?)")
+                        .setParameter(1, saved.getId())
+                        .setParameter(2, saved.getName())
+                        .executeUpdate());
+                written.add(shard);
+            }
+        } catch (RuntimeException e) {
+            for (int shard : written) {
+                try {
+                    shards.write(shard, em -> em.createNativeQuery("delete from team where team_id = ?")
+                            .setParameter(1, saved.getId())
+                            .executeUpdate());
+                } catch (RuntimeException compensation) {
+                    e.addSuppressed(compensation);
+                }
+            }
+            throw e;
+        }
+        return saved;
+    }
+
+    /**
+     * 팀이 있는 샤드에 바로 커밋한다. 호출자의 트랜잭션과 함께 롤백되지 않는다
+     */
+    public Member save(String username, int age, Long teamId) {
+        return shards.write(shards.shardOf(teamId), em -> {
+            Member member = new Member(username, age);
+            if (teamId != null) {
+                member.setTeam(em.getReference(Team.class, teamId));
+            }
+            em.persist(member);
+            return member;
+        });
+    }
+
+    /**
+     * 회원의 팀이 있는 샤드에 바로 커밋한다. 호출자의 트랜잭션과 함께 롤백되지 않는다
+     */
+    public void save(Member member) {
+        Long teamId = member.getTeam() != null ? member.getTeam().getId() : null;
+        shards.write(shards.shardOf(teamId), em -> {
+            em.persist(member);
+            return member;
+        });
+    }
+
+    /**
+     * 같은 샤드({@link #shardOf(Long)})에 들어갈 회원들을 샤드 트랜잭션 하나로 저장한다. 요청 순서대로 돌려준다
+     */
+    public List<Member> saveAll(int shard, List<MemberCreateRequest> requests) {
+        return shards.write(shard, em -> {
+            List<Member> members = new ArrayList<>(requests.size());
+            for (MemberCreateRequest request : requests) {
+                Member member = new Member(request.getUsername(), request.getAge());
+                if (request.getTeamId() != null) {
+                    member.setTeam(em.getReference(Team.class, request.getTeamId()));
+                }
+                em.persist(member);
+                members.add(member);
+            }
+            em.flush();
+            return members;
+        });
+    }
+
+    /**
+     * 그 팀의 회원이 들어가는 샤드
+     */
+    public int shardOf(Long teamId) {
+        return shards.shardOf(teamId);
+    }
+
+    public Optional<Member> findById(Long id) {
+        int shard = shards.shardOfMember(id);
+        if (shard < 0) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(shards.read(shard, em -> memberQuery(em)
+                .where(member.id.eq(id))
+                .fetchOne()));
+    }
+
+    public List<Member> findAllById(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = ids.stream()
+                .filter(id -> shards.shardOfMember(id) >= 0)
+                .collect(Collectors.groupingBy(shards::shardOfMember));
+        List<CompletableFuture<List<Member>>> results = idsByShard.entrySet().stream()
+                .map(entry -> shards.readAsync(entry.getKey(), em -> memberQuery(em)
+                        .where(member.id.in(entry.getValue()))
+                        .fetch()))
+                .toList();
+        return results.stream()
+                .flatMap(result -> result.join().stream())
+                .toList();
+    }
+
+    public List<Member> findAll() {
+        return findAllWhere(null);
+    }
+
+    public List<Member> findByUsername(String username) {
+        return findAllWhere(member.username.eq(username));
+    }
+
+    // 모든 샤드를 병렬로 읽어 id 순으로 합친다
+    private List<Member> findAllWhere(Predicate predicate) {
+        List<CompletableFuture<List<Member>>> results = IntStream.range(0, shards.size())
+                .mapToObj(shard -> shards.readAsync(shard, em -> memberQuery(em)
+                        .where(predicate)
+                        .fetch()))
+                .toList();
+        return results.stream()
+                .flatMap(result -> result.join().stream())
+                .sorted(Comparator.comparing(Member::getId))
+                .toList();
+    }
+
+    private static JPAQuery<Member> memberQuery(EntityManager em) {
+        return new JPAQueryFactory(em)
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin();
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        rejectArchived(condition);
+        MemberFields.rejectFields(condition, "the sharded search");
+        List<CompletableFuture<List<MemberTeamDto>>> results = targetShards(condition).stream()
+                .map(shard -> shards.readAsync(shard, em -> contentQuery(em, condition, Sort.unsorted()).fetch()))
+                .toList();
+        return merge(results, MemberSort.comparator(Sort.unsorted()), 0, Long.MAX_VALUE);
+    }
+
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        rejectArchived(condition);
+        MemberFields.rejectFields(condition, "the sharded search");
+        Sort sort = pageable.getSort();
+        // 샤드마다 offset + size 개를 가져와 병합한 뒤 offset 만큼 버린다
+        long perShardLimit = pageable.getOffset() + pageable.getPageSize();
+        if (perShardLimit > MAX_PAGE_END) {
+            throw new QueryBudgetException("sharded paging reads offset + size rows from every shard; "
+                    + perShardLimit + " exceeds " + MAX_PAGE_END + ", narrow the condition instead of paging deeper");
+        }
+        Set<Integer> targets = targetShards(condition);
+
+        List<CompletableFuture<List<MemberTeamDto>>> contents = targets.stream()
+                .map(shard -> shards.readAsync(shard, em -> contentQuery(em, condition, sort)
+                        .limit(perShardLimit)
+                        .fetch()))
+                .toList();
+        List<CompletableFuture<Long>> counts = targets.stream()
+                .map(shard -> shards.readAsync(shard, em -> countQuery(em, condition)))
+                .toList();
+
+        List<MemberTeamDto> content = merge(contents, MemberSort.comparator(sort), pageable.getOffset(), pageable.getPageSize());
+        long total = counts.stream().mapToLong(CompletableFuture::join).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // 아카이빙은 샤딩과 함께 켤 수 없으므로 (MemberArchiver) 샤드에는 member_archive 가 없다
+    private static void rejectArchived(MemberSearchCondition condition) {
+        if (condition.isIncludeArchived()) {
+            throw new UnroutedShardAccessException("includeArchived");
+        }
+    }
+
+    private Set<Integer> targetShards(MemberSearchCondition condition) {
+        Set<Integer> targets = new TreeSet<>();
+        if (!hasText(condition.getTeamName())) {
+            IntStream.range(0, shards.size()).forEach(targets::add);
+            return targets;
+        }
+
+        List<Long> teamIds = shards.read(TEAM_DIRECTORY, em -> new JPAQueryFactory(em)
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(condition.getTeamName()))
+                .fetch());
+        teamIds.forEach(teamId -> targets.add(shards.shardOf(teamId)));
+        return targets;
+    }
+
+    private static List<MemberTeamDto> merge(List<CompletableFuture<List<MemberTeamDto>>> results,
+                                             Comparator<MemberTeamDto> order, long offset, long limit) {
+        List<List<MemberTeamDto>> sorted = results.stream().map(CompletableFuture::join).toList();
+
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparing(Cursor::current, order));
+        for (List<MemberTeamDto> rows : sorted) {
+            if (!rows.isEmpty()) {
+                heads.add(new Cursor(rows));
+            }
+        }
+
+        List<MemberTeamDto> merged = new ArrayList<>();
+        long skipped = 0;
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor head = heads.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(head.current());
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static JPAQuery<MemberTeamDto> contentQuery(EntityManager em, MemberSearchCondition condition, Sort sort) {
+        return new JPAQueryFactory(em)
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .orderBy(MemberSort.orderBy(sort));
+    }
+
+    private static Long countQuery(EntityManager em, MemberSearchCondition condition) {
+        return new JPAQueryFactory(em)
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .fetchOne();
+    }
+
+    private static BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null ;
+    }
+
+    private static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null ;
+    }
+
+    private static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null ;
+    }
+
+    private static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null ;
+    }
+
+    private static class Cursor {
+
+        private final List<MemberTeamDto> rows;
+        private int index;
+
+        Cursor(List<MemberTeamDto> rows) {
+            this.rows = rows;
+        }
+
+        MemberTeamDto current() {
+            return rows.get(index);
+        }
+
+        boolean advance() {
+            return ++index < rows.size();
+        }
+    }
+}
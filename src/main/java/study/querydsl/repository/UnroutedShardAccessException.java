@@ -0,0 +1,13 @@
+package study.querydsl.repository;
+
+/**
+ * {@link MemberShards} 를 거치지 않고 기본 데이터소스만 읽고 쓰는 경로를 샤딩이 켜진 상태에서 불렀다.
+ * 샤드의 회원이 보이지 않는 잘못된 결과를 돌려주는 대신 실패한다.
+ */
+// IllegalStateException 이면 리포지토리 예외 변환에서 InvalidDataAccessApiUsageException 으로 바뀐다
+public class UnroutedShardAccessException extends RuntimeException {
+
+    public UnroutedShardAccessException(String path) {
+        super(path + " is not routed through the member shards and cannot be used with querydsl.sharding.enabled=true");
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Set;
+
+// IllegalArgumentException 이면 리포지토리 예외 변환에서 InvalidDataAccessApiUsageException(500) 으로 바뀐다
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedFieldException extends RuntimeException {
+
+    public UnsupportedFieldException(String field) {
+        super("field '" + field + "' is not supported. available fields: " + MemberFields.ALL);
+    }
+
+    public UnsupportedFieldException(Set<String> fields, String path) {
+        super("fields=" + String.join(",", fields) + " is not supported by " + path);
+    }
+}
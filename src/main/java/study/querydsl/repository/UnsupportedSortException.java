@@ -0,0 +1,18 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// IllegalArgumentException 이면 리포지토리 예외 변환에서 InvalidDataAccessApiUsageException(500) 으로 바뀐다
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedSortException extends RuntimeException {
+
+    public UnsupportedSortException(String property) {
+        super("sort by '" + property + "' is not supported. sortable properties: " + MemberSort.SORTABLE);
+    }
+
+    public UnsupportedSortException(Sort sort, String path) {
+        super("sort " + sort + " is not supported by " + path);
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.ForeignKey;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * MEMBER 테이블의 querydsl-sql 쿼리 타입.
+ * <p>
+ * 코드 생성 없이 손으로 관리한다. {@link study.querydsl.entity.Member} 의 컬럼을 바꾸면 같이 고쳐야 하고,
+ * SqlQueryTypesTest 가 Hibernate 가 만든 스키마와 컬럼, 타입, null 여부, 키를 비교한다.
+ */
+public class SMember extends RelationalPathBase<SMember> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final SMember member = new SMember("member");
+
+    public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+
+    public final StringPath username = createString("username");
+
+    public final NumberPath<Integer> age = createNumber("age", Integer.class);
+
+    public final DateTimePath<LocalDateTime> lastActiveAt = createDateTime("lastActiveAt", LocalDateTime.class);
+
+    public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+    public final PrimaryKey<SMember> memberPk = createPrimaryKey(memberId);
+
+    public final ForeignKey<STeam> teamFk = createForeignKey(teamId, "TEAM_ID");
+
+    public SMember(String variable) {
+        super(SMember.class, forVariable(variable), "PUBLIC", "MEMBER");
+        addMetadata();
+    }
+
+    public SMember(String variable, String schema, String table) {
+        super(SMember.class, forVariable(variable), schema, table);
+        addMetadata();
+    }
+
+    public SMember(Path<? extends SMember> path) {
+        super(path.getType(), path.getMetadata(), "PUBLIC", "MEMBER");
+        addMetadata();
+    }
+
+    public SMember(PathMetadata metadata) {
+        super(SMember.class, metadata, "PUBLIC", "MEMBER");
+        addMetadata();
+    }
+
+    public void addMetadata() {
+        addMetadata(memberId, ColumnMetadata.named("MEMBER_ID").withIndex(1).ofType(Types.BIGINT).withSize(64).notNull());
+        addMetadata(age, ColumnMetadata.named("AGE").withIndex(2).ofType(Types.INTEGER).withSize(32).notNull());
+        addMetadata(lastActiveAt, ColumnMetadata.named("LAST_ACTIVE_AT").withIndex(3).ofType(Types.TIMESTAMP).withSize(26).withDigits(6));
+        addMetadata(teamId, ColumnMetadata.named("TEAM_ID").withIndex(4).ofType(Types.BIGINT).withSize(64));
+        addMetadata(username, ColumnMetadata.named("USERNAME").withIndex(5).ofType(Types.VARCHAR).withSize(255));
+    }
+}
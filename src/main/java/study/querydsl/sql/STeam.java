@@ -0,0 +1,60 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.ForeignKey;
+import com.querydsl.sql.PrimaryKey;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * TEAM 테이블의 querydsl-sql 쿼리 타입.
+ * <p>
+ * 코드 생성 없이 손으로 관리한다. {@link study.querydsl.entity.Team} 의 컬럼을 바꾸면 같이 고쳐야 하고,
+ * SqlQueryTypesTest 가 Hibernate 가 만든 스키마와 컬럼, 타입, null 여부, 키를 비교한다.
+ */
+public class STeam extends RelationalPathBase<STeam> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final STeam team = new STeam("team");
+
+    public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+    public final StringPath name = createString("name");
+
+    public final PrimaryKey<STeam> teamPk = createPrimaryKey(teamId);
+
+    public final ForeignKey<SMember> _memberTeamFk = createInvForeignKey(teamId, "TEAM_ID");
+
+    public STeam(String variable) {
+        super(STeam.class, forVariable(variable), "PUBLIC", "TEAM");
+        addMetadata();
+    }
+
+    public STeam(String variable, String schema, String table) {
+        super(STeam.class, forVariable(variable), schema, table);
+        addMetadata();
+    }
+
+    public STeam(Path<? extends STeam> path) {
+        super(path.getType(), path.getMetadata(), "PUBLIC", "TEAM");
+        addMetadata();
+    }
+
+    public STeam(PathMetadata metadata) {
+        super(STeam.class, metadata, "PUBLIC", "TEAM");
+        addMetadata();
+    }
+
+    public void addMetadata() {
+        addMetadata(teamId, ColumnMetadata.named("TEAM_ID").withIndex(1).ofType(Types.BIGINT).withSize(64).notNull());
+        addMetadata(name, ColumnMetadata.named("NAME").withIndex(2).ofType(Types.VARCHAR).withSize(255));
+    }
+}
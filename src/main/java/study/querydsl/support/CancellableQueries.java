@@ -0,0 +1,107 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 조회를 별도 스레드의 읽기 전용 트랜잭션에서 실행하고, HTTP 클라이언트가 연결을 끊거나 비동기 요청이 타임아웃되면
+ * {@link Session#cancelQuery()} 로 실행 중인 statement 를 취소한다.
+ * <p>
+ * 요청 스레드는 바로 반환되므로 톰캣이 연결 끊김을 감지해 AsyncListener#onError 를 부를 수 있다.
+ */
+@Slf4j
+@Component
+public class CancellableQueries {
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    public CancellableQueries(EntityManager em,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${querydsl.guard.request-timeout-ms:10000}") long timeoutMs,
+                              @Value("${querydsl.guard.threads:8}") int threads) {
+        this.em = em;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), runnable -> {
+            Thread thread = new Thread(runnable, "cancellable-query-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 큐가 가득 차면 RejectedExecutionException
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> query) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMs);
+        AtomicReference<Session> running = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        result.onError(e -> cancel("client_disconnect", running, cancelled));
+        result.onTimeout(() -> cancel("request_timeout", running, cancelled));
+
+        executor.execute(() -> {
+            try {
+                T value = readOnlyTransaction.execute(status -> {
+                    // 취소 요청이 먼저 왔으면 실행하지 않는다
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    running.set(em.unwrap(Session.class));
+                    try {
+                        return query.get();
+                    } finally {
+                        running.set(null);
+                    }
+                });
+                result.setResult(value);
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        });
+        return result;
+    }
+
+    private void cancel(String reason, AtomicReference<Session> running, AtomicBoolean cancelled) {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+        meterRegistry.counter("member.query.guard.violations", "violation", reason).increment();
+        Session session = running.get();
+        if (session != null) {
+            log.debug("Cancelling running query ({})", reason);
+            session.cancelQuery();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.support;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+
+/**
+ * persist 되거나 이름이 바뀌는 회원의 username 을 {@link UsernameBloomFilter} 에 넣는다.
+ * 바뀌기 전 이름은 필터에 남지만 Bloom filter 는 없는 이름을 "있을 수도 있다" 고 답해도 되므로 그대로 둔다.
+ * 엔티티를 거치지 않는 벌크 쓰기는 {@link TableVersionStatementInspector} 가 필터를 다시 만들게 한다.
+ */
+@Component
+public class MemberUsernameListener {
+
+    // querydsl.username-filter.enabled=false 면 없다
+    private final ObjectProvider<UsernameBloomFilter> usernameFilter;
+
+    public MemberUsernameListener(ObjectProvider<UsernameBloomFilter> usernameFilter) {
+        this.usernameFilter = usernameFilter;
+    }
+
+    // flush 전에 같은 트랜잭션에서 조회해도 보이도록 insert 전에 넣는다
+    @PrePersist
+    public void onPersist(Member member) {
+        usernameFilter.ifAvailable(filter -> filter.add(member.getUsername()));
+    }
+
+    // 변경 감지로 나가는 update 전에 새 이름을 넣는다
+    @PreUpdate
+    public void onUpdate(Member member) {
+        usernameFilter.ifAvailable(filter -> filter.add(member.getUsername()));
+    }
+}
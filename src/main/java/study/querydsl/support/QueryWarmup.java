@@ -0,0 +1,169 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 배포 직후 첫 요청이 느린 문제를 줄이기 위한 워밍업.
+ * <p>
+ * ApplicationRunner 는 ApplicationReadyEvent 보다 먼저 실행되므로 워밍업이 끝나기 전에는 readiness 가 ACCEPTING_TRAFFIC 이 되지 않는다.
+ * 데이터를 넣는 다른 ApplicationRunner(local 프로필의 InitMember) 뒤에 실행되도록 가장 낮은 우선순위로 둔다.
+ * 모든 검색 조건 조합(username, teamName, ageGoe, ageLoe 의 16가지)으로 각 리포지토리 쿼리를 실행해
+ * Hibernate 쿼리 플랜 캐시를 채우고, 커넥션 풀의 최소 커넥션을 미리 연다. 모든 쿼리는 롤백된다.
+ * <p>
+ * 플랜은 값이 아니라 조건의 모양으로 정해지므로 어떤 행과도 맞지 않는 값(없는 username, 빈 나이 범위)을 쓴다.
+ * 그런 조건이 없는 모양(조건 없음, 사전에 있는 팀 이름만)은 테이블을 다 읽지 않도록 페이지 크기로 제한된 페이징 쿼리만 실행하고,
+ * 나머지 목록 쿼리는 첫 요청 때 컴파일된다.
+ * <p>
+ * teamName 조건은 {@link TeamNameDictionary} 에 따라 FK 로 거르거나 team 을 조인해 거르므로 두 모양을 모두 실행한다.
+ * 없는 팀 이름은 DB 에 묻지 않으므로 사전에 있는 팀 이름을 쓴다. 팀이 하나도 없으면 FK 모양은 첫 요청 때 컴파일된다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.warmup.enabled", havingValue = "true", matchIfMissing = true)
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class QueryWarmup implements ApplicationRunner {
+
+    private static final int SHAPES = 1 << 4;
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    // 회원, 팀 이름으로 쓸 수 없는 값
+    static final String ABSENT_NAME = "\u0000warmup";
+
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final TeamNameDictionary teamNameDictionary;
+    private final TableVersions tableVersions;
+
+    @Value("${querydsl.warmup.iterations:10}")
+    private int iterations;
+
+    @Override
+    public void run(ApplicationArguments args) throws SQLException {
+        long start = System.nanoTime();
+
+        int connections = primePool();
+        long poolMillis = (System.nanoTime() - start) / 1_000_000;
+
+        int queries = 0;
+        for (int i = 0; i < iterations; i++) {
+            queries += runQueryShapes();
+        }
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Query warm-up finished in {} ms (pool {} ms, {} connections, {} queries, {} iterations)",
+                totalMillis, poolMillis, connections, queries, iterations);
+    }
+
+    private int primePool() throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return 0;
+        }
+        int minimumIdle = dataSource.unwrap(HikariDataSource.class).getMinimumIdle();
+
+        // 동시에 빌려야 풀이 실제로 minimumIdle 만큼 커넥션을 연다
+        List<Connection> borrowed = new ArrayList<>(minimumIdle);
+        try {
+            for (int i = 0; i < minimumIdle; i++) {
+                borrowed.add(dataSource.getConnection());
+            }
+        } finally {
+            for (Connection connection : borrowed) {
+                connection.close();
+            }
+        }
+        return borrowed.size();
+    }
+
+    private int runQueryShapes() {
+        Integer queries = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            List<MemberSearchCondition> conditions = new ArrayList<>(SHAPES);
+
+            int count = 0;
+            String teamName = teamNameDictionary.anyName();
+            if (teamName != null) {
+                for (int shape = 0; shape < SHAPES; shape++) {
+                    MemberSearchCondition condition = sampleCondition(shape, teamName);
+                    boolean matchesNothing = (shape & ~TEAM_NAME) != 0;
+                    if (matchesNothing) {
+                        conditions.add(condition);
+                    }
+                    count += search(condition, matchesNothing);
+                }
+            }
+
+            // 팀을 쓴 트랜잭션처럼 표시해 team.name 조인 모양도 컴파일한다. 롤백되므로 버전은 오르지 않는다
+            tableVersions.markWritten(TableVersions.TEAM);
+            for (int shape = 0; shape < SHAPES; shape++) {
+                if (teamName == null || (shape & TEAM_NAME) != 0) {
+                    MemberSearchCondition condition = sampleCondition(shape, ABSENT_NAME);
+                    boolean matchesNothing = shape != 0;
+                    if (matchesNothing) {
+                        conditions.add(condition);
+                    }
+                    count += search(condition, matchesNothing);
+                }
+            }
+
+            // OR 로 묶으므로 맞는 행이 없는 조건만 넣는다
+            memberRepository.searchBatch(conditions);
+            memberJpaRepository.findByUsername(ABSENT_NAME);
+            memberJpaRepository.findByUsername_Querydsl(ABSENT_NAME);
+            memberJpaRepository.findAllById(List.of(0L));
+            memberRepository.findByUsername(ABSENT_NAME);
+            return count + 5;
+        });
+        return queries != null ? queries : 0;
+    }
+
+    /**
+     * @param matchesNothing false 면 조건에 맞는 행이 있을 수 있으므로 행 수가 제한된 페이징 쿼리만 실행한다
+     */
+    private int search(MemberSearchCondition condition, boolean matchesNothing) {
+        PageRequest pageable = PageRequest.of(0, 20);
+        memberRepository.searchPageSimple(condition, pageable);
+        memberRepository.searchPageComplex(condition, pageable);
+        if (!matchesNothing) {
+            return 2;
+        }
+        memberJpaRepository.searchByBuilder(condition);
+        memberJpaRepository.searchByWhere(condition);
+        memberRepository.search(condition);
+        return 5;
+    }
+
+    // 팀 이름 말고는 모두 어떤 행과도 맞지 않는 값이다. ageGoe, ageLoe 는 하나만 있어도 비는 범위다
+    private static MemberSearchCondition sampleCondition(int shape, String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & USERNAME) != 0) condition.setUsername(ABSENT_NAME);
+        if ((shape & TEAM_NAME) != 0) condition.setTeamName(teamName);
+        if ((shape & AGE_GOE) != 0) condition.setAgeGoe(Integer.MAX_VALUE);
+        if ((shape & AGE_LOE) != 0) condition.setAgeLoe(Integer.MIN_VALUE);
+        return condition;
+    }
+}
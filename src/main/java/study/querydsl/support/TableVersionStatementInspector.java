@@ -0,0 +1,73 @@
+package study.querydsl.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hibernate 가 실행하는 모든 SQL 을 보고 쓰기 대상 테이블을 {@link TableVersions} 에 알린다.
+ * 엔티티 변경뿐 아니라 벌크 update/delete, 네이티브 쿼리까지 잡힌다.
+ */
+public class TableVersionStatementInspector implements StatementInspector {
+
+    private static final Pattern WRITE = Pattern.compile(
+            "^\\s*(?:insert\\s+into|update|delete\\s+from|delete|merge\\s+into)\\s+(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+    // update <table> [alias] set <set 절> [where <where 절>]
+    private static final Pattern UPDATE = Pattern.compile(
+            "^\\s*update\\s+\\w+(?:\\s+(?!set\\b)\\w+)?\\s+set\\s+(.*?)(?:\\s+where\\s+(.*?))?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern ASSIGNS_USERNAME = Pattern.compile("(?:^|[\\s,.])username\\s*=", Pattern.CASE_INSENSITIVE);
+    // Hibernate 가 엔티티 하나를 update 할 때의 모양: set col=?,col=? where member_id=?
+    private static final Pattern PARAMETERS_ONLY = Pattern.compile("^\\w+\\s*=\\s*\\?(?:\\s*,\\s*\\w+\\s*=\\s*\\?)*$");
+    private static final Pattern BY_MEMBER_ID = Pattern.compile("^member_id\\s*=\\s*\\?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT = Pattern.compile("\\bselect\\b", Pattern.CASE_INSENSITIVE);
+
+    private final TableVersions tableVersions;
+    // persist 를 거치지 않고 username 이 생기거나 바뀌면 호출한다
+    private final Runnable onUsernameBulkWrite;
+
+    public TableVersionStatementInspector(TableVersions tableVersions) {
+        this(tableVersions, () -> {});
+    }
+
+    public TableVersionStatementInspector(TableVersions tableVersions, Runnable onUsernameBulkWrite) {
+        this.tableVersions = tableVersions;
+        this.onUsernameBulkWrite = onUsernameBulkWrite;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Matcher matcher = WRITE.matcher(sql);
+        if (matcher.find()) {
+            String table = matcher.group(1).toLowerCase(Locale.ROOT);
+            tableVersions.markWritten(table);
+            if (TableVersions.MEMBER.equals(table) && isUsernameBulkWrite(sql)) {
+                onUsernameBulkWrite.run();
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * persist 의 insert ... values 와 엔티티 update 는 엔티티 리스너가 처리한다.
+     * update 는 set 절에서 username 을 바꿀 때만 본다 (where username = ? 은 해당 없음).
+     * 엔티티 update 와 모양이 같은 네이티브 update (set username = ? where member_id = ?) 는 구분하지 못한다.
+     */
+    private static boolean isUsernameBulkWrite(String sql) {
+        Matcher update = UPDATE.matcher(sql);
+        if (update.matches()) {
+            String set = update.group(1).strip();
+            String where = update.group(2);
+            if (!ASSIGNS_USERNAME.matcher(set).find()) {
+                return false;
+            }
+            return !(PARAMETERS_ONLY.matcher(set).matches() && where != null && BY_MEMBER_ID.matcher(where.strip()).matches());
+        }
+        String head = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return head.startsWith("insert") && SELECT.matcher(sql).find()
+                || head.startsWith("merge");
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.support;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 테이블별 버전 카운터. 쓰기가 커밋될 때마다 1씩 증가한다.
+ * <p>
+ * 인스턴스 메모리에만 존재하므로 재시작하면 0부터 다시 시작한다. ETag 에는 {@link #epoch()} 를 함께 넣어야 한다.
+ */
+@Component
+public class TableVersions {
+
+    public static final String MEMBER = "member";
+    public static final String TEAM = "team";
+
+    private final long epoch = System.currentTimeMillis();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public long current(String table) {
+        AtomicLong version = versions.get(table);
+        return version != null ? version.get() : 0L;
+    }
+
+    public String etag(String... tables) {
+        StringBuilder etag = new StringBuilder().append(epoch);
+        for (String table : tables) {
+            etag.append('-').append(current(table));
+        }
+        return etag.toString();
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋 후에, 밖이면 즉시 버전을 올린다.
+     */
+    public void markWritten(String table) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(table);
+            return;
+        }
+        pendingWrites().tables.add(table);
+    }
+
+    /**
+     * 현재 트랜잭션이 이 테이블에 썼고 아직 커밋 전이면 true
+     */
+    public boolean isWrittenInCurrentTransaction(String table) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingWrites pending) {
+                return pending.tables.contains(table);
+            }
+        }
+        return false;
+    }
+
+    private PendingWrites pendingWrites() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingWrites pending) {
+                return pending;
+            }
+        }
+        PendingWrites pending = new PendingWrites();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private void bump(String table) {
+        versions.computeIfAbsent(table, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private class PendingWrites implements TransactionSynchronization {
+
+        private final Set<String> tables = new HashSet<>();
+
+        @Override
+        public void afterCommit() {
+            tables.forEach(TableVersions.this::bump);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.support;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Team;
+
+/**
+ * Team 엔티티 쓰기를 team 테이블 쓰기로 기록한다. 커밋 전까지 {@link TeamNameDictionary} 는 조인으로 거르고, 커밋되면 사전을 다시 읽는다.
+ * 벌크 update/delete 는 엔티티 리스너를 거치지 않으므로 TableVersionStatementInspector 가 기록한다.
+ */
+@Component
+public class TeamChangeListener {
+
+    private final TableVersions tableVersions;
+
+    public TeamChangeListener(TableVersions tableVersions) {
+        this.tableVersions = tableVersions;
+    }
+
+    @PrePersist
+    @PreUpdate
+    @PreRemove
+    public void onChange(Team team) {
+        tableVersions.markWritten(TableVersions.TEAM);
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 팀 이름 -> team_id 사전. teamName 조건을 조인 없이 member.team_id 로 거르기 위해 쓴다.
+ * <p>
+ * team 테이블의 {@link TableVersions} 가 바뀌면 다음 조회 때 다시 읽는다.
+ * 현재 트랜잭션이 팀을 썼으면 ({@link TeamChangeListener}, 벌크 쓰기는 {@link TableVersionStatementInspector})
+ * 아직 커밋하지 않은 변경이 사전에 없으므로 조인으로 거른다.
+ * flush 전의 이름 변경은 flush 때 {@link TeamChangeListener} 가 알게 되므로 그 전에 만든 조건에는 보이지 않는다.
+ */
+@Component
+public class TeamNameDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    private volatile Snapshot snapshot;
+
+    public TeamNameDictionary(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * teamName 조건을 어떻게 거를지 한 번에 정한다. 한 요청의 모든 쿼리(내용, 건수, id)는 같은 결과를 써야 한다
+     */
+    public TeamFilter resolve(String teamName) {
+        if (!hasText(teamName)) {
+            return TeamFilter.NONE;
+        }
+        if (tableVersions.isWrittenInCurrentTransaction(TableVersions.TEAM)) {
+            return new TeamFilter(teamName, true, null);
+        }
+        Snapshot current = current();
+        if (current.ambiguous.contains(teamName)) {
+            return new TeamFilter(teamName, true, null);
+        }
+        return new TeamFilter(teamName, false, current.ids.get(teamName));
+    }
+
+    /**
+     * 사전에 있는 아무 팀 이름. 팀이 없으면 null
+     */
+    public String anyName() {
+        return current().ids.keySet().stream().findFirst().orElse(null);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        long version = tableVersions.current(TableVersions.TEAM);
+        if (current == null || current.version != version) {
+            current = load(version);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private Snapshot load(long version) {
+        Map<String, Long> ids = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+        jdbcTemplate.query("select name, team_id from team", rs -> {
+            String name = rs.getString(1);
+            if (name != null && ids.put(name, rs.getLong(2)) != null) {
+                ambiguous.add(name);
+            }
+        });
+        ambiguous.forEach(ids::remove);
+        return new Snapshot(version, Map.copyOf(ids), Set.copyOf(ambiguous));
+    }
+
+    /**
+     * @param viaJoin true 면 team 을 조인해 team.name 으로 거른다
+     * @param teamId  viaJoin 이 false 일 때 거를 team_id. null 이면 없는 팀이다
+     */
+    public record TeamFilter(String name, boolean viaJoin, Long teamId) {
+
+        public static final TeamFilter NONE = new TeamFilter(null, false, null);
+
+        public boolean isPresent() {
+            return name != null;
+        }
+
+        /**
+         * 없는 팀 이름이라 DB 에 묻지 않아도 결과가 비어 있다
+         */
+        public boolean isUnknown() {
+            return name != null && !viaJoin && teamId == null;
+        }
+    }
+
+    private record Snapshot(long version, Map<String, Long> ids, Set<String> ambiguous) {
+    }
+}
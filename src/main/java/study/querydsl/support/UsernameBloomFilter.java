@@ -0,0 +1,255 @@
+package study.querydsl.support;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.support.bloom.ScalableBloomFilter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 존재하는 username 의 Bloom filter. 없는 username 조회를 DB 에 묻지 않고 끝내기 위해 쓴다.
+ * <p>
+ * 기동 시 member 테이블을 스트리밍으로 읽어 만들고, 이후 persist / 이름 변경은 {@link MemberUsernameListener} 가 추가한다.
+ * set 절에서 username 을 바꾸는 벌크 update, insert ... select 처럼 엔티티를 거치지 않는 쓰기는 {@link TableVersionStatementInspector} 가 알려 주며,
+ * 그때부터 커밋 후 백그라운드에서 다시 만들 때까지는 {@link #isDefinitelyAbsent(String)} 가 false 다.
+ * Hibernate 를 거치지 않는 JDBC 쓰기나 네이티브 insert ... values 는 알 수 없으므로 그 뒤에는 {@link #rebuild()} 를 불러야 한다.
+ * <p>
+ * flush 전에 엔티티에서 바꾼 이름은 {@link #touched(String)} 로 트랜잭션에 기록해 두고, 그 트랜잭션에서는 그 이름을 없다고 답하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.username-filter.enabled", havingValue = "true", matchIfMissing = true)
+public class UsernameBloomFilter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+
+    private volatile ScalableBloomFilter filter;
+    // 다시 만드는 동안 추가된 이름은 새 필터에도 넣는다
+    private volatile ScalableBloomFilter building;
+    // staleGeneration 이 builtGeneration 과 다르면 필터를 믿을 수 없다
+    private final AtomicLong staleGeneration = new AtomicLong();
+    private volatile long builtGeneration = -1;
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "username-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UsernameBloomFilter(JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${querydsl.username-filter.initial-capacity:65536}") int initialCapacity,
+                               @Value("${querydsl.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+
+        Gauge.builder("member.username.filter.false.positive.rate", this, UsernameBloomFilter::expectedFalsePositiveRate)
+                .description("채워진 비트로 추정한 오탐률")
+                .register(meterRegistry);
+        Gauge.builder("member.username.filter.size", this, UsernameBloomFilter::sizeInBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("member.username.filter.count", this, UsernameBloomFilter::count)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        scheduleRebuild();
+    }
+
+    /**
+     * true 면 그 username 의 회원은 확실히 없다
+     */
+    public boolean isDefinitelyAbsent(String username) {
+        ScalableBloomFilter current = filter;
+        if (username == null || current == null || builtGeneration != staleGeneration.get()) {
+            return false;
+        }
+        if (touchedInCurrentTransaction(username)) {
+            return false;
+        }
+        return !current.mightContain(username);
+    }
+
+    public void add(String username) {
+        if (username == null) {
+            return;
+        }
+        addNow(username);
+        // 커밋 전에 시작한 재구성은 이 이름을 못 읽으므로 커밋 뒤에 한 번 더 넣는다
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingNames().names.add(username);
+        }
+    }
+
+    private void addNow(String username) {
+        ScalableBloomFilter current = filter;
+        if (current != null) {
+            current.add(username);
+        }
+        ScalableBloomFilter next = building;
+        if (next != null) {
+            next.add(username);
+        }
+    }
+
+    /**
+     * 엔티티를 거치지 않고 username 이 바뀌었다. 커밋 뒤에 다시 만든다
+     */
+    public void markStale() {
+        staleGeneration.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scheduleRebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // 커밋 전에 시작한 재구성은 커밋된 이름을 못 봤을 수 있다
+                staleGeneration.incrementAndGet();
+                scheduleRebuild();
+            }
+        });
+    }
+
+    /**
+     * member 테이블을 처음부터 다시 읽는다
+     */
+    public synchronized void rebuild() {
+        long generation = staleGeneration.get();
+        ScalableBloomFilter next = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        building = next;
+        try {
+            jdbcTemplate.query(connection -> {
+                var statement = connection.prepareStatement("select username from member");
+                statement.setFetchSize(1000);
+                return statement;
+            }, rs -> {
+                String username = rs.getString(1);
+                if (username != null) {
+                    next.add(username);
+                }
+            });
+            filter = next;
+            builtGeneration = generation;
+        } finally {
+            building = null;
+        }
+        log.debug("Username filter rebuilt: {} names, {} bytes", next.count(), next.sizeInBytes());
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            rebuildScheduled.set(false);
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Username filter rebuild failed", e);
+            }
+        });
+    }
+
+    /**
+     * 회원 엔티티의 username 이 바뀌었다. flush 전에는 영속성 컨텍스트에만 있으므로 트랜잭션이 끝날 때까지 기억한다
+     */
+    public static void touched(String username) {
+        if (username == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TouchedNames touched = touchedNames();
+        if (touched == null) {
+            touched = new TouchedNames();
+            TransactionSynchronizationManager.registerSynchronization(touched);
+        }
+        touched.names.add(username);
+    }
+
+    private static boolean touchedInCurrentTransaction(String username) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TouchedNames touched = touchedNames();
+        return touched != null && touched.names.contains(username);
+    }
+
+    private static TouchedNames touchedNames() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TouchedNames touched) {
+                return touched;
+            }
+        }
+        return null;
+    }
+
+    public double expectedFalsePositiveRate() {
+        ScalableBloomFilter current = filter;
+        return current != null ? current.expectedFalsePositiveRate() : 0.0;
+    }
+
+    public long sizeInBytes() {
+        ScalableBloomFilter current = filter;
+        return current != null ? current.sizeInBytes() : 0L;
+    }
+
+    public long count() {
+        ScalableBloomFilter current = filter;
+        return current != null ? current.count() : 0L;
+    }
+
+    private PendingNames pendingNames() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingNames pending) {
+                return pending;
+            }
+        }
+        PendingNames pending = new PendingNames();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private class PendingNames implements TransactionSynchronization {
+
+        private final List<String> names = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            names.forEach(UsernameBloomFilter.this::addNow);
+        }
+    }
+
+    // 트랜잭션이 끝나면 동기화와 함께 버려진다
+    private static class TouchedNames implements TransactionSynchronization {
+
+        private final Set<String> names = new HashSet<>();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
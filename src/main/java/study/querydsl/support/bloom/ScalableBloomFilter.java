@@ -0,0 +1,169 @@
+package study.querydsl.support.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 크기가 늘어나는 Bloom filter (Almeida et al., "Scalable Bloom Filters").
+ * <p>
+ * 단계(stage)가 가득 차면 용량은 growth 배, 오탐률은 tightening 배인 단계를 새로 붙인다.
+ * 그래서 원소 수를 미리 몰라도 전체 오탐률이 p0 / (1 - tightening) 를 넘지 않는다.
+ * 추가는 한 스레드씩, 조회는 락 없이 동시에 할 수 있다. 삭제는 지원하지 않는다.
+ */
+public class ScalableBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final double tightening;
+    private final int growth;
+
+    private volatile Stage[] stages;
+    private volatile long count;
+
+    /**
+     * @param initialCapacity    첫 단계의 원소 수
+     * @param falsePositiveRate  첫 단계의 오탐률
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        this(initialCapacity, falsePositiveRate, 2, 0.5);
+    }
+
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate, int growth, double tightening) {
+        if (initialCapacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1
+                || growth < 1 || tightening <= 0 || tightening >= 1) {
+            throw new IllegalArgumentException("invalid bloom filter parameters");
+        }
+        this.growth = growth;
+        this.tightening = tightening;
+        this.stages = new Stage[]{new Stage(initialCapacity, falsePositiveRate)};
+    }
+
+    public synchronized void add(String value) {
+        long hash = hash(value);
+        Stage[] current = stages;
+        // 이미 있으면 채우지 않는다 (중복 추가로 단계가 늘어나지 않게)
+        for (Stage stage : current) {
+            if (stage.mightContain(hash)) {
+                return;
+            }
+        }
+        Stage last = current[current.length - 1];
+        if (last.count >= last.capacity) {
+            last = new Stage(Math.multiplyExact(last.capacity, growth), last.falsePositiveRate * tightening);
+            Stage[] grown = new Stage[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = last;
+            stages = grown;
+        }
+        last.add(hash);
+        count++;
+    }
+
+    /**
+     * false 면 확실히 없다. true 면 있을 수도 있다
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * 지금 채워진 비트로 추정한 오탐률. 1 - Π(1 - fill_i^k_i)
+     */
+    public double expectedFalsePositiveRate() {
+        double none = 1.0;
+        for (Stage stage : stages) {
+            none *= 1.0 - Math.pow((double) stage.setBits / stage.bits, stage.hashes);
+        }
+        return 1.0 - none;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.words.length() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public int stageCount() {
+        return stages.length;
+    }
+
+    // FNV-1a 뒤에 murmur3 fmix64 로 비트를 고르게 섞는다
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return fmix64(h);
+    }
+
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stage {
+
+        private final int capacity;
+        private final double falsePositiveRate;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+
+        private int count;
+        private long setBits;
+
+        private Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+            int wordCount = (int) Math.max(1, (optimalBits + 63) / 64);
+            this.bits = wordCount * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * LN2));
+            this.words = new AtomicLongArray(wordCount);
+        }
+
+        // 이중 해싱: i 번째 위치 = h1 + i * h2
+        private void add(long hash) {
+            long h1 = hash;
+            long h2 = fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long before = words.getAndUpdate(word, w -> w | mask);
+                if ((before & mask) == 0) {
+                    setBits++;
+                }
+            }
+            count++;
+        }
+
+        private boolean mightContain(long hash) {
+            long h1 = hash;
+            long h2 = fmix64(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
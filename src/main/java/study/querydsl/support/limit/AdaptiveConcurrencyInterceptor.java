@@ -0,0 +1,83 @@
+package study.querydsl.support.limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 엔드포인트(HTTP 메서드 + 매핑 패턴)마다 {@link VegasLimit} 를 따로 두고, 한도를 넘는 요청은 기다리게 하지 않고 바로 503 으로 돌려보낸다.
+ * <p>
+ * 비동기 요청(DeferredResult, CompletableFuture)은 비동기 디스패치가 끝날 때 반납한다.
+ */
+public class AdaptiveConcurrencyInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = AdaptiveConcurrencyInterceptor.class.getName() + ".PERMIT";
+
+    private final Map<String, VegasLimit> limits = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int probeMultiplier;
+
+    public AdaptiveConcurrencyInterceptor(MeterRegistry meterRegistry, int initialLimit, int minLimit, int maxLimit, int probeMultiplier) {
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeMultiplier = probeMultiplier;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 비동기 디스패치에서 다시 불린 경우. 이미 허가를 받았다
+        if (request.getAttribute(PERMIT) != null) {
+            return true;
+        }
+
+        String endpoint = request.getMethod() + " " + request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        VegasLimit limit = limits.computeIfAbsent(endpoint, this::newLimit);
+        if (!limit.tryAcquire()) {
+            meterRegistry.counter("member.limiter.rejected", "endpoint", endpoint).increment();
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "concurrency limit " + limit.getLimit() + " reached");
+            return false;
+        }
+        request.setAttribute(PERMIT, new Permit(limit, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null) {
+            request.removeAttribute(PERMIT);
+            boolean dropped = ex != null || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+            permit.limit().release(System.nanoTime() - permit.startNanos(), dropped);
+        }
+    }
+
+    private VegasLimit newLimit(String endpoint) {
+        VegasLimit limit = new VegasLimit(initialLimit, minLimit, maxLimit, probeMultiplier);
+        Gauge.builder("member.limiter.limit", limit, VegasLimit::getLimit)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("member.limiter.inflight", limit, VegasLimit::getInFlight)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    private record Permit(VegasLimit limit, long startNanos) {
+    }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.support.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP Vegas 방식의 동시 실행 한도.
+ * <p>
+ * 부하가 없을 때의 응답 시간(rttNoLoad)과 지금 응답 시간의 비율로 DB 나 커넥션 풀 앞에 쌓인 대기열 길이를 추정한다.
+ * 대기열이 짧으면 한도를 올리고 길어지면 내린다. rttNoLoad 는 가끔 다시 잰다 (probe).
+ */
+public class VegasLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int probeMultiplier;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private long rttNoLoad;
+    private long probeCountdown;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, int probeMultiplier) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeMultiplier = probeMultiplier;
+        this.probeCountdown = nextProbeCountdown(initialLimit);
+    }
+
+    /**
+     * 한도 안이면 true. true 를 받은 호출은 반드시 {@link #release(long, boolean)} 해야 한다.
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param rttNanos 요청 처리 시간
+     * @param dropped  실패(5xx, 타임아웃)로 끝났으면 true. 한도를 바로 줄인다
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightAtStart = inFlight.getAndDecrement();
+        onSample(rttNanos, inFlightAtStart, dropped);
+    }
+
+    private synchronized void onSample(long rtt, int inFlightAtStart, boolean dropped) {
+        if (--probeCountdown <= 0) {
+            rttNoLoad = 0;
+            probeCountdown = nextProbeCountdown(limit);
+        }
+        double current = limit;
+        double log = Math.max(1, Math.log10(current));
+        // 실패한 요청의 지연 시간은 믿을 수 없으므로 rttNoLoad 갱신 없이 줄이기만 한다
+        if (dropped) {
+            limit = (int) Math.max(minLimit, current - log);
+            return;
+        }
+        if (rttNoLoad == 0 || rtt < rttNoLoad) {
+            rttNoLoad = rtt;
+            return;
+        }
+
+        double next;
+        if (inFlightAtStart * 2 < current) {
+            // 한도를 다 쓰지도 않았으면 지연 시간이 한도에 대해 알려 주는 게 없다
+            return;
+        } else {
+            double queueSize = Math.ceil(current * (1 - (double) rttNoLoad / rtt));
+            if (queueSize <= log) {
+                next = current + 6 * log;
+            } else if (queueSize < 3 * log) {
+                next = current + log;
+            } else if (queueSize > 6 * log) {
+                next = current - log;
+            } else {
+                return;
+            }
+        }
+        limit = (int) Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    private long nextProbeCountdown(int limit) {
+        return (long) probeMultiplier * limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
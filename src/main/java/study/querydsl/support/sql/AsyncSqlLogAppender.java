@@ -0,0 +1,95 @@
+package study.querydsl.support.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.jdbc.internal.FormatStyle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 요청 스레드는 큐에 넣기만 하고, SQL 포맷팅과 로그 출력은 전용 스레드에서 한다.
+ * <p>
+ * 큐는 lock-free 큐에 크기 카운터를 붙여 제한한다. 가득 차면 버리고 sql.log.dropped 로 센다.
+ */
+@Slf4j(topic = "study.querydsl.sql")
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-log.mode", havingValue = "sampled")
+public class AsyncSqlLogAppender {
+
+    private final Queue<SqlLogEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final Counter dropped;
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public AsyncSqlLogAppender(@Value("${querydsl.sql-log.queue-capacity:10000}") int capacity,
+                               MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.dropped = meterRegistry.counter("sql.log.dropped");
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::drainLoop, "sql-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean offer(SqlLogEvent event) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        queue.offer(event);
+        return true;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        }
+        drain();
+    }
+
+    private boolean drain() {
+        boolean drained = false;
+        SqlLogEvent event;
+        while ((event = queue.poll()) != null) {
+            size.decrementAndGet();
+            write(event);
+            drained = true;
+        }
+        return drained;
+    }
+
+    private void write(SqlLogEvent event) {
+        String sql = FormatStyle.BASIC.getFormatter().format(event.sql());
+        if (event.error() == null) {
+            log.info("[{}] {} ms, connection {}{}", event.reason(), event.elapsedMillis(), event.connectionId(), sql);
+        } else {
+            log.warn("[{}] {} ms, connection {}, failed: {}{}", event.reason(), event.elapsedMillis(), event.connectionId(),
+                    event.error(), sql);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.support.sql;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * p6spy 동기 로깅 대신 쓰는 샘플링 리스너.
+ * <p>
+ * 실패, 느린 쿼리(slow-threshold-ms 이상), 상세 로그 요청(X-Debug-Sql), 고정 비율(sample-rate) 중 하나에 해당하는 문장만 남긴다.
+ * 해당하지 않는 문장은 파라미터가 치환된 SQL 문자열조차 만들지 않는다.
+ * 상세 로그 요청은 클라이언트가 켜는 것이므로 바인딩 값 없이 ? 가 남은 SQL 만 남긴다.
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-log.mode", havingValue = "sampled")
+public class SampledSqlLogListener extends SimpleJdbcEventListener {
+
+    static final String DETAIL = "detail";
+
+    private final AsyncSqlLogAppender appender;
+    private final double sampleRate;
+    private final long slowThresholdMillis;
+
+    public SampledSqlLogListener(AsyncSqlLogAppender appender,
+                                 @Value("${querydsl.sql-log.sample-rate:0.01}") double sampleRate,
+                                 @Value("${querydsl.sql-log.slow-threshold-ms:200}") long slowThresholdMillis) {
+        this.appender = appender;
+        this.sampleRate = sampleRate;
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos);
+        String reason = reason(elapsedMillis, e);
+        if (reason == null) {
+            return;
+        }
+
+        appender.offer(new SqlLogEvent(reason, elapsedMillis,
+                statementInformation.getConnectionInformation().getConnectionId(),
+                DETAIL.equals(reason) ? statementInformation.getSql() : statementInformation.getSqlWithValues(),
+                e != null ? e.getMessage() : null));
+    }
+
+    private String reason(long elapsedMillis, SQLException e) {
+        if (e != null) {
+            return "error";
+        }
+        if (elapsedMillis >= slowThresholdMillis) {
+            return "slow";
+        }
+        if (SqlLogContext.isDetailed()) {
+            return DETAIL;
+        }
+        if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            return "sampled";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.support.sql;
+
+/**
+ * 요청 단위로 상세 SQL 로그를 켜기 위한 스레드 로컬 플래그.
+ */
+public final class SqlLogContext {
+
+    private static final ThreadLocal<Boolean> DETAILED = new ThreadLocal<>();
+
+    private SqlLogContext() {
+    }
+
+    public static boolean isDetailed() {
+        return DETAILED.get() != null;
+    }
+
+    static void enableDetailed() {
+        DETAILED.set(Boolean.TRUE);
+    }
+
+    static void clear() {
+        DETAILED.remove();
+    }
+}
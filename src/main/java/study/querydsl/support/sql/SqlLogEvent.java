@@ -0,0 +1,4 @@
+package study.querydsl.support.sql;
+
+public record SqlLogEvent(String reason, long elapsedMillis, int connectionId, String sql, String error) {
+}
@@ -0,0 +1,49 @@
+package study.querydsl.support.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * X-Debug-Sql: true 헤더가 붙은 요청은 샘플링과 상관없이 모든 SQL 을 로그로 남긴다.
+ * <p>
+ * 아무나 로그를 늘리지 못하도록 querydsl.sql-log.debug-addresses 의 주소(기본은 loopback)에서 온 요청만 헤더를 따른다.
+ * 프록시 뒤라면 server.forward-headers-strategy 를 켜야 원래 클라이언트 주소로 비교한다.
+ * 헤더로 남기는 SQL 에는 바인딩 값이 없다 ({@link SampledSqlLogListener}).
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-log.mode", havingValue = "sampled")
+public class SqlLogRequestFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Debug-Sql";
+
+    private final Set<String> allowedAddresses;
+
+    public SqlLogRequestFilter(@Value("${querydsl.sql-log.debug-addresses:127.0.0.1,0:0:0:0:0:0:0:1}") Set<String> allowedAddresses) {
+        this.allowedAddresses = allowedAddresses;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!"true".equalsIgnoreCase(request.getHeader(HEADER)) || !allowedAddresses.contains(request.getRemoteAddr())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        SqlLogContext.enableDetailed();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlLogContext.clear();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.test.context.ActiveProfiles;
+import study.querydsl.support.QueryWarmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "querydsl.warmup.enabled=true",
+        "querydsl.warmup.iterations=1"
+})
+@ActiveProfiles("local")
+class InitMemberTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Test
+    public void seedsBeforeWarmupTest() throws Exception{
+        // when
+        // SpringApplication 과 같은 방식으로 ApplicationRunner 를 정렬한다
+        List<Object> runners = new ArrayList<>(context.getBeansOfType(ApplicationRunner.class).values());
+        AnnotationAwareOrderComparator.sort(runners);
+
+        // then
+        // 워밍업이 샘플 데이터가 들어간 DB 로 실행된다
+        assertThat(runners).hasAtLeastOneElementOfType(InitMember.class);
+        assertThat(runners).filteredOn(runner -> runner instanceof InitMember || runner instanceof QueryWarmup)
+                .extracting(Object::getClass)
+                .containsExactly(InitMember.class, QueryWarmup.class);
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.controller;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 검색 엔진 설정(querydsl.search.engine=jpa)과 상관없이 기본 설정에서 켜져 있다
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberAnalyticsControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void ageRankTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+
+        // when // then
+        mockMvc.perform(get("/members/analytics/age-rank").param("teamName", "teamA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].username").value("member2"))
+                .andExpect(jsonPath("$[0].ageRank").value(1));
+
+        mockMvc.perform(get("/members/analytics/age-rank").param("size", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+}
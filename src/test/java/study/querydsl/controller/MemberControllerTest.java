@@ -0,0 +1,223 @@
+package study.querydsl.controller;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberBatchLoader;
+import study.querydsl.repository.MemberCounterBuffer;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberWriteBehind;
+import study.querydsl.support.CancellableQueries;
+import study.querydsl.support.TableVersions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberCounterBuffer memberCounterBuffer;
+    @Autowired
+    MemberBatchLoader memberBatchLoader;
+    @Autowired
+    TableVersions tableVersions;
+    @Autowired
+    CancellableQueries cancellableQueries;
+
+    @Test
+    public void sparseFieldsTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20));
+        em.flush();
+
+        // when // then
+        // fields 를 요청하면 그 속성만 쓴다
+        mockMvc.perform(get("/v1/members").param("username", "member1").param("fields", "username, age"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].username").value("member1"))
+                .andExpect(jsonPath("$[0].age").value(10))
+                .andExpect(jsonPath("$[0].memberId").doesNotExist())
+                .andExpect(jsonPath("$[0].teamName").doesNotExist());
+
+        // 요청하지 않으면 팀이 없는 회원도 teamId, teamName 을 null 로 쓴다
+        mockMvc.perform(get("/v3/members").param("username", "member2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].username").value("member2"))
+                .andExpect(jsonPath("$.content[0].teamId").hasJsonPath())
+                .andExpect(jsonPath("$.content[0].teamName").hasJsonPath());
+    }
+
+    @Test
+    public void findMembersByIdsTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20);
+        em.persist(member1);
+        em.persist(member2);
+        em.flush();
+        em.clear();
+
+        // when // then
+        // 요청한 순서대로, 없는 id 는 빼고 돌려준다
+        mockMvc.perform(get("/members").param("ids", member2.getId() + ",-1," + member1.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].username").value("member2"))
+                .andExpect(jsonPath("$[1].username").value("member1"))
+                .andExpect(jsonPath("$[1].teamName").value("teamA"));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void conditionalSearchTest() throws Exception{
+        // given
+        Statistics statistics = statistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Team teamA = new Team("teamA");
+                em.persist(teamA);
+                em.persist(new Member("member1", 10, teamA));
+            });
+
+            // when // then
+            assertConditionalSearch("/v1/members");
+            assertConditionalSearch("/v2/members");
+            assertConditionalSearch("/v3/members");
+        } finally {
+            statistics.setStatisticsEnabled(false);
+            transactionTemplate.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
+    private void assertConditionalSearch(String url) throws Exception {
+        Statistics statistics = statistics();
+        statistics.clear();
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(statistics.getPrepareStatementCount()).as(url).isPositive();
+
+        // 바뀐 것이 없으면 리포지토리를 부르지 않고(쿼리 0 번) 304
+        statistics.clear();
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertThat(statistics.getPrepareStatementCount()).as(url).isZero();
+
+        // 회원 쓰기가 커밋되면 새 ETag 로 200
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("member2", 20)));
+        String memberWritten = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(memberWritten).isNotNull().isNotEqualTo(etag);
+
+        // 팀 쓰기도 마찬가지
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Team("teamB")));
+        String teamWritten = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, memberWritten))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(teamWritten).isNotNull().isNotEqualTo(memberWritten);
+    }
+
+    private Statistics statistics() {
+        return em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void archivedSearchRejectsFieldsTest() throws Exception{
+        mockMvc.perform(get("/v3/members").param("includeArchived", "true").param("fields", "username"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void createMemberTest() throws Exception{
+        try {
+            // when
+            MvcResult result = mockMvc.perform(post("/members")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"member1\",\"age\":10}"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            // then
+            // 배치가 커밋된 뒤에 201 과 회원 id 로 응답한다
+            String memberId = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            Member member = transactionTemplate.execute(status -> em.find(Member.class, Long.valueOf(memberId)));
+            assertThat(member.getUsername()).isEqualTo("member1");
+
+            mockMvc.perform(post("/members")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"age\":10}"))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            transactionTemplate.executeWithoutResult(status ->
+                    em.createQuery("delete from Member").executeUpdate());
+        }
+    }
+
+    @Test
+    public void createMemberQueueFullTest() throws Exception{
+        // given
+        // writer 를 시작하지 않은 용량 1 짜리 큐
+        MemberWriteBehind writeBehind = new MemberWriteBehind(transactionTemplate, 1, 100, 5, 100);
+        MockMvc standalone = MockMvcBuilders.standaloneSetup(new MemberController(memberJpaRepository, memberRepository,
+                writeBehind, memberCounterBuffer, memberBatchLoader, tableVersions, cancellableQueries)).build();
+        standalone.perform(post("/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"member1\",\"age\":10}"))
+                .andExpect(request().asyncStarted());
+
+        // when // then
+        standalone.perform(post("/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"member2\",\"age\":10}"))
+                .andExpect(status().isTooManyRequests());
+        writeBehind.stop();
+    }
+}
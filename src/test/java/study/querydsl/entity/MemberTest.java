@@ -1,6 +1,7 @@
 package study.querydsl.entity;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,6 +9,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 @SpringBootTest
 @Transactional
 class MemberTest {
@@ -46,4 +49,44 @@ class MemberTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void changeTeamDoesNotLoadMembers() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+
+        // when
+        Team findTeam = em.find(Team.class, teamA.getId());
+        Member member3 = new Member("member3", 30, findTeam);
+        em.persist(member3);
+
+        // then
+        assertThat(member3.getTeam()).isSameAs(findTeam);
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+
+        // flush 후에 로딩하면 새 회원도 들어 있다
+        em.flush();
+        assertThat(findTeam.getMembers()).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member3");
+    }
+
+    @Test
+    public void changeTeamWithReferenceDoesNotLoadTeam() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+        em.clear();
+
+        // when
+        Team reference = em.getReference(Team.class, teamA.getId());
+        em.persist(new Member("member1", 10, reference));
+
+        // then
+        assertThat(Hibernate.isInitialized(reference)).isFalse();
+    }
+}
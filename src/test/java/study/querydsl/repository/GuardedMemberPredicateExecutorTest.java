@@ -0,0 +1,163 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPAExpressions;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "querydsl.guard.max-rows=3",
+        "querydsl.guard.timeout-ms=1000"
+})
+@Transactional
+class GuardedMemberPredicateExecutorTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    GuardedMemberPredicateExecutorImpl guardedExecutor;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void guardTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 5; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        QMember member = QMember.member;
+        double noIndexBefore = violations("no_indexed_column");
+        double rowCapBefore = violations("row_cap");
+
+        // when
+        Iterable<Member> found = memberRepository.findAll(member.team.name.eq("teamA").and(member.age.loe(30)));
+
+        // then
+        assertThat(found).extracting("username").containsExactlyInAnyOrder("member1", "member2", "member3");
+        assertThatThrownBy(() -> memberRepository.findAll(member.lastActiveAt.before(LocalDateTime.now())))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThatThrownBy(() -> memberRepository.findAll(member.age.goe(10)))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThat(violations("no_indexed_column")).isEqualTo(noIndexBefore + 1);
+        assertThat(violations("row_cap")).isEqualTo(rowCapBefore + 1);
+        assertThat(memberRepository.count(member.age.goe(10))).isEqualTo(5);
+    }
+
+    @Test
+    public void operatorTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        QMember member = QMember.member;
+
+        // when & then
+        // 인덱스 컬럼이어도 인덱스로 좁히지 못하는 비교는 거절한다
+        assertThatThrownBy(() -> memberRepository.findAll(member.username.ne("member1")))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThatThrownBy(() -> memberRepository.findAll(member.username.like("%ember1%")))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThatThrownBy(() -> memberRepository.findAll(member.age.isNotNull()))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThatThrownBy(() -> memberRepository.findAll(member.username.eq("member1")
+                .or(member.lastActiveAt.before(LocalDateTime.now()))))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThat(memberRepository.findAll(member.username.like("member1%")))
+                .extracting("username").containsExactly("member1");
+        assertThat(memberRepository.findAll(member.username.eq("member1").or(member.age.goe(20))))
+                .extracting("username").containsExactlyInAnyOrder("member1", "member2");
+    }
+
+    @Test
+    public void timeoutHintTest() throws Exception{
+        // given
+        QMember member = QMember.member;
+
+        // when
+        Map<String, Object> countHints = guardedExecutor.query(member.age.goe(10))
+                .select(member.count())
+                .createQuery()
+                .getHints();
+        Map<String, Object> existsHints = guardedExecutor.query(member.age.goe(10))
+                .select(member.id)
+                .limit(1)
+                .createQuery()
+                .getHints();
+
+        // then
+        assertThat(countHints).containsEntry("jakarta.persistence.query.timeout", 1000);
+        assertThat(existsHints).containsEntry("jakarta.persistence.query.timeout", 1000);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void timeoutCancelsQueryTest() throws Exception{
+        // given
+        // timeout 난 커넥션은 풀이 버리므로 리포지토리 자신의 트랜잭션에서 확인한다
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 200; i++) {
+                em.persist(new Member("member" + i, i, teamA));
+            }
+        });
+        QMember member = QMember.member;
+        QMember m2 = new QMember("m2");
+        QMember m3 = new QMember("m3");
+        QMember m4 = new QMember("m4");
+        // 회원마다 200^3 행을 세는 상관 서브쿼리. timeout 없이는 끝나지 않는다
+        Predicate slow = member.age.goe(0).and(member.id.lt(JPAExpressions
+                .select(m2.count())
+                .from(m2, m3, m4)
+                .where(m2.age.loe(member.age))));
+        double timeoutsBefore = violations("timeout");
+
+        try {
+            // when
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> memberRepository.count(slow))
+                    .isInstanceOf(QueryTimeoutException.class);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // then
+            assertThat(elapsedMillis).isLessThan(10_000);
+            assertThat(violations("timeout")).isEqualTo(timeoutsBefore + 1);
+            // 버려진 커넥션 대신 새 커넥션으로 계속 조회된다
+            assertThat(memberRepository.count(member.age.loe(1))).isEqualTo(2);
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
+    private double violations(String violation) {
+        return meterRegistry.counter("member.query.guard.violations", "violation", violation).count();
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Transactional
+class MemberAnalyticsRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberAnalyticsRepository memberAnalyticsRepository;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 40, teamB));
+        em.flush();
+    }
+
+    @Test
+    public void ageRankTest() throws Exception{
+        // when
+        List<MemberAgeStatsDto> result = memberAnalyticsRepository.ageRank(null, PageRequest.of(0, 10));
+
+        // then
+        assertThat(result)
+                .extracting("username", "ageRank")
+                .containsExactlyInAnyOrder(
+                        tuple("member2", 1L), tuple("member1", 2L),
+                        tuple("member4", 1L), tuple("member5", 1L), tuple("member3", 3L));
+    }
+
+    @Test
+    public void ageRankPageTest() throws Exception{
+        // when
+        List<MemberAgeStatsDto> first = memberAnalyticsRepository.ageRank(null, PageRequest.of(0, 3));
+        List<MemberAgeStatsDto> second = memberAnalyticsRepository.ageRank(null, PageRequest.of(1, 3));
+
+        // then
+        assertThat(first).extracting("username").containsExactly("member2", "member1", "member4");
+        assertThat(second).extracting("username").containsExactly("member5", "member3");
+    }
+
+    @Test
+    public void ageDeviationTest() throws Exception{
+        // when
+        List<MemberAgeStatsDto> result = memberAnalyticsRepository.ageDeviation("teamA", 0.0, PageRequest.of(0, 10));
+
+        // then
+        assertThat(result).extracting("username").containsExactly("member2");
+        assertThat(result.get(0).getTeamAvgAge()).isEqualTo(15.0);
+        assertThat(result.get(0).getAgeDeviation()).isEqualTo(5.0);
+    }
+
+    @Test
+    public void oldestPerTeamTest() throws Exception{
+        // when
+        List<MemberAgeStatsDto> result = memberAnalyticsRepository.oldestPerTeam(null, 1);
+
+        // then
+        assertThat(result)
+                .extracting("username")
+                .containsExactlyInAnyOrder("member2", "member4", "member5");
+    }
+}
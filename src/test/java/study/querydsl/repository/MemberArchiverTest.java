@@ -0,0 +1,133 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberArchive;
+import study.querydsl.entity.Team;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 청크마다 커밋하는지 보려면 바깥 트랜잭션이 없어야 한다
+@SpringBootTest(properties = {
+        "querydsl.archive.enabled=true",
+        "querydsl.archive.inactive-days=30",
+        "querydsl.archive.chunk-size=2",
+        "querydsl.archive.cron=-"
+})
+class MemberArchiverTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    MemberArchiver memberArchiver;
+    @Autowired
+    MemberCounterBuffer memberCounterBuffer;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from MemberArchive").executeUpdate();
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void archiveTest() throws Exception{
+        // given
+        persistMembers();
+
+        // when
+        int archived = memberArchiver.archiveInactiveMembers();
+
+        // then
+        assertThat(archived).isEqualTo(4);
+        assertThat(hotUsernames()).containsExactly("member3");
+        assertThat(archivedUsernames()).containsExactlyInAnyOrder("member1", "member2", "member4", "member5");
+    }
+
+    @Test
+    public void activityKeepsMemberHotTest() throws Exception{
+        // given
+        List<Long> ids = persistMembers();
+        // 회원 정보 변경과 나이 증감이 last_active_at 을 갱신한다
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, ids.get(0)).setAge(11));
+        memberCounterBuffer.addAge(ids.get(1), 1);
+        memberCounterBuffer.flush();
+
+        // when
+        int archived = memberArchiver.archiveInactiveMembers();
+
+        // then
+        assertThat(archived).isEqualTo(2);
+        assertThat(hotUsernames()).containsExactly("member1", "member2", "member3");
+        assertThat(archivedUsernames()).containsExactlyInAnyOrder("member4", "member5");
+    }
+
+    @Test
+    public void failedChunkResumesTest() throws Exception{
+        // given
+        List<Long> ids = persistMembers();
+        // member4 의 archive 행을 미리 넣어 두 번째 청크 (member4, member5) 가 실패하게 한다
+        transactionTemplate.executeWithoutResult(status ->
+                em.persist(new MemberArchive(em.find(Member.class, ids.get(3)), LocalDateTime.now())));
+
+        // when
+        assertThatThrownBy(() -> memberArchiver.archiveInactiveMembers());
+
+        // then
+        // 첫 청크는 커밋되어 있고, 실패한 청크는 롤백되어 member 에 남는다
+        assertThat(hotUsernames()).containsExactly("member3", "member4", "member5");
+        assertThat(archivedUsernames()).containsExactlyInAnyOrder("member1", "member2", "member4");
+
+        // 막던 행을 지우고 다시 실행하면 남은 회원부터 옮긴다
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from MemberArchive a where a.id = :id")
+                        .setParameter("id", ids.get(3))
+                        .executeUpdate());
+        assertThat(memberArchiver.archiveInactiveMembers()).isEqualTo(2);
+        assertThat(hotUsernames()).containsExactly("member3");
+        assertThat(archivedUsernames()).containsExactlyInAnyOrder("member1", "member2", "member4", "member5");
+    }
+
+    // member3 만 최근에 활동했다
+    private List<Long> persistMembers() {
+        return transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+
+            List<Long> ids = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                Member member = new Member("member" + i, i * 10, teamA);
+                if (i != 3) {
+                    member.setLastActiveAt(LocalDateTime.now().minusDays(100));
+                }
+                em.persist(member);
+                ids.add(member.getId());
+            }
+            return ids;
+        });
+    }
+
+    private List<String> hotUsernames() {
+        return transactionTemplate.execute(status ->
+                em.createQuery("select m.username from Member m order by m.username", String.class).getResultList());
+    }
+
+    private List<String> archivedUsernames() {
+        return transactionTemplate.execute(status ->
+                em.createQuery("select a.username from MemberArchive a", String.class).getResultList());
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.sql.SMember.member;
+
+// 스키마를 붙인 SQL (querydsl.sql.schema) 로도 읽는다
+@SpringBootTest(properties = "querydsl.sql.schema=PUBLIC")
+@Transactional
+class MemberColumnRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberColumnRepository memberColumnRepository;
+
+    @Test
+    public void fetchPrimitiveTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        // FETCH_SIZE 를 넘겨 배열이 늘어나는 경우까지
+        for (int i = 0; i < 2500; i++) {
+            em.persist(new Member("member" + i, i % 100, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+
+        MemberSearchCondition teamACondition = new MemberSearchCondition();
+        teamACondition.setTeamName("teamA");
+        MemberSearchCondition ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeGoe(90);
+
+        // when
+        int[] ages = memberColumnRepository.ages(new MemberSearchCondition());
+        long[] ids = memberColumnRepository.ids(teamACondition);
+        long ageSum;
+        try (IntStream stream = memberColumnRepository.streamInts(member.age, ageCondition)) {
+            ageSum = stream.asLongStream().sum();
+        }
+
+        // then
+        assertThat(ages).hasSize(2500);
+        assertThat(IntStream.of(ages).max().getAsInt()).isEqualTo(99);
+        assertThat(ids).hasSize(1250);
+        assertThat(ageSum).isEqualTo(25L * (90 + 91 + 92 + 93 + 94 + 95 + 96 + 97 + 98 + 99));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamRequiresTransactionTest() throws Exception{
+        // when & then
+        // 트랜잭션 없이 열면 메서드가 끝날 때 커넥션이 반납되어 읽을 수 없는 스트림이 된다
+        assertThatThrownBy(() -> memberColumnRepository.streamInts(member.age, new MemberSearchCondition()))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+}
@@ -0,0 +1,164 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.support.TableVersions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// flush 가 자체 트랜잭션으로 커밋하므로 트랜잭션 없이 확인한다
+@SpringBootTest
+class MemberCounterBufferTest {
+
+    @Autowired
+    MemberCounterBuffer memberCounterBuffer;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TableVersions tableVersions;
+    @Autowired
+    AutowireCapableBeanFactory beanFactory;
+
+    @AfterEach
+    public void cleanUp() {
+        memberCounterBuffer.flush();
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @Test
+    public void concurrentFlushTest() throws Exception{
+        // given
+        List<Long> memberIds = saveMembers(2);
+        int threads = 8;
+        int increments = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            // when
+            // 증감하는 동안 flush 가 계속 버퍼를 바꾼다
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < increments; i++) {
+                        memberCounterBuffer.addAge(memberIds.get(i % 2), 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            while (!futures.stream().allMatch(Future::isDone)) {
+                memberCounterBuffer.flush();
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            memberCounterBuffer.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        // 잃어버리거나 두 번 반영된 증감이 없다
+        assertThat(age(memberIds.get(0))).isEqualTo(threads * increments / 2);
+        assertThat(age(memberIds.get(1))).isEqualTo(threads * increments / 2);
+    }
+
+    @Test
+    public void batchFlushTest() throws Exception{
+        // given
+        List<Long> memberIds = saveMembers(4);
+        memberCounterBuffer.addAge(memberIds.get(0), 1);
+        memberCounterBuffer.addAge(memberIds.get(1), 2);
+        memberCounterBuffer.addAge(memberIds.get(1), 3);
+        memberCounterBuffer.addAge(memberIds.get(2), -4);
+        // 합이 0 인 회원은 update 하지 않는다
+        memberCounterBuffer.addAge(memberIds.get(3), 5);
+        memberCounterBuffer.addAge(memberIds.get(3), -5);
+
+        // when
+        int flushed = memberCounterBuffer.flush();
+
+        // then
+        assertThat(flushed).isEqualTo(3);
+        assertThat(age(memberIds.get(0))).isEqualTo(1);
+        assertThat(age(memberIds.get(1))).isEqualTo(5);
+        assertThat(age(memberIds.get(2))).isEqualTo(-4);
+        assertThat(age(memberIds.get(3))).isEqualTo(0);
+        // 이미 반영한 증감은 다시 반영하지 않는다
+        assertThat(memberCounterBuffer.flush()).isZero();
+        assertThat(age(memberIds.get(1))).isEqualTo(5);
+    }
+
+    @Test
+    public void tableVersionTest() throws Exception{
+        // given
+        List<Long> memberIds = saveMembers(1);
+        long before = tableVersions.current(TableVersions.MEMBER);
+        String etag = tableVersions.etag(TableVersions.MEMBER, TableVersions.TEAM);
+
+        // when // then
+        // 반영할 증감이 없으면 버전을 올리지 않는다
+        memberCounterBuffer.flush();
+        assertThat(tableVersions.current(TableVersions.MEMBER)).isEqualTo(before);
+
+        // 커밋하면 member 버전이 올라 ETag 가 바뀐다
+        memberCounterBuffer.addAge(memberIds.get(0), 1);
+        memberCounterBuffer.flush();
+        assertThat(tableVersions.current(TableVersions.MEMBER)).isEqualTo(before + 1);
+        assertThat(tableVersions.etag(TableVersions.MEMBER, TableVersions.TEAM)).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void flushOnDestroyTest() throws Exception{
+        // given
+        List<Long> memberIds = saveMembers(1);
+        MemberCounterBuffer buffer = beanFactory.createBean(MemberCounterBuffer.class);
+        buffer.addAge(memberIds.get(0), 7);
+
+        // when
+        // 컨테이너가 빈을 정리할 때 @PreDestroy 로 남은 증감을 반영한다
+        beanFactory.destroyBean(buffer);
+
+        // then
+        assertThat(age(memberIds.get(0))).isEqualTo(7);
+    }
+
+    private List<Long> saveMembers(int count) {
+        return transactionTemplate.execute(status -> {
+            List<Long> memberIds = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Member member = new Member("member" + i, 0);
+                em.persist(member);
+                em.flush();
+                memberIds.add(member.getId());
+            }
+            return memberIds;
+        });
+    }
+
+    private int age(Long memberId) {
+        return jdbcTemplate.queryForObject("select age from member where member_id = ?", Integer.class, memberId);
+    }
+}
@@ -1,16 +1,26 @@
 package study.querydsl.repository;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -22,6 +32,10 @@ class MemberJpaRepositoryTest {
     EntityManager em;
     @Autowired
     MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberCounterBuffer memberCounterBuffer;
+    @Autowired
+    TransactionTemplate transactionTemplate;
 
     @Test
     public void basicTest() throws Exception{
@@ -61,6 +75,83 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void readOnlyTest() throws Exception{
+        // given
+        memberJpaRepository.save(new Member("member1", 10));
+        em.flush();
+        em.clear();
+
+        // when
+        // read-write 트랜잭션에서는 지금까지처럼 관리 엔티티라 변경이 반영된다
+        Member findMember = memberJpaRepository.findByUsername("member1").get(0);
+        boolean readOnly = em.unwrap(Session.class).isReadOnly(findMember);
+        findMember.setAge(20);
+        em.flush();
+        em.clear();
+
+        // then
+        assertThat(readOnly).isFalse();
+        assertThat(memberJpaRepository.findByUsername("member1").get(0).getAge()).isEqualTo(20);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void readOnlyTransactionTest() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> memberJpaRepository.save(new Member("member1", 10)));
+        TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTemplate.setReadOnly(true);
+
+        try {
+            // when
+            Boolean readOnly = readOnlyTemplate.execute(status -> {
+                Member findMember = memberJpaRepository.findByUsername("member1").get(0);
+                return em.unwrap(Session.class).isReadOnly(findMember);
+            });
+
+            // then
+            // readOnly 트랜잭션에서 부를 때만 read-only 로 읽는다
+            assertThat(readOnly).isTrue();
+        } finally {
+            transactionTemplate.executeWithoutResult(status ->
+                    em.createQuery("delete from Member").executeUpdate());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void statelessScanTest() throws Exception{
+        // given
+        // StatelessSession 은 자체 커넥션으로 읽으므로 커밋된 데이터가 필요하다
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 30; i++) {
+                em.persist(new Member("member" + i, i, teamA));
+            }
+        });
+
+        try {
+            // when
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setAgeGoe(10);
+            condition.setTeamName("teamA");
+            List<Member> scanned = new ArrayList<>();
+            long count = memberJpaRepository.scan(condition, scanned::add);
+
+            // then
+            assertThat(count).isEqualTo(20);
+            assertThat(scanned).extracting("age").allMatch(age -> (int) age >= 10);
+            assertThat(scanned).extracting("team.name").containsOnly("teamA");
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
     @Test
     public void searchTest() throws Exception{
         // given
@@ -93,4 +184,62 @@ class MemberJpaRepositoryTest {
                 .containsExactly("member4");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void batchLoaderTest() throws Exception{
+        // given
+        Member member1 = new Member("member1", 10);
+        Member member2 = new Member("member2", 20);
+        memberJpaRepository.save(member1);
+        memberJpaRepository.save(member2);
+        em.flush();
+        em.clear();
+
+        MemberBatchLoader loader = new MemberBatchLoader(memberJpaRepository);
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        try {
+            // when
+            List<Optional<Member>> result = loader.loadMany(List.of(member2.getId(), -1L, member1.getId(), member2.getId()));
+            long loadManyStatements = statistics.getPrepareStatementCount();
+            Optional<Member> memoized = loader.get(member1.getId());
+            Optional<Member> missing = loader.get(-1L);
+
+            // then
+            assertThat(result).extracting(found -> found.map(Member::getUsername).orElse(null))
+                    .containsExactly("member2", null, "member1", "member2");
+            // 중복을 포함한 4개 id 를 IN 쿼리 하나로 읽고, 이미 읽은 id 는 (없는 id 도) 다시 묻지 않는다
+            assertThat(loadManyStatements).isEqualTo(1);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(memoized.get().getUsername()).isEqualTo("member1");
+            assertThat(missing).isEmpty();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void counterBufferTest() throws Exception{
+        // given
+        Member member = new Member("member1", 10);
+        memberJpaRepository.save(member);
+        em.flush();
+
+        // when
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> memberCounterBuffer.addAge(member.getId(), 1));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        int flushed = memberCounterBuffer.flush();
+        em.clear();
+
+        // then
+        assertThat(flushed).isEqualTo(1);
+        assertThat(memberJpaRepository.findById(member.getId()).get().getAge()).isEqualTo(1010);
+    }
+
+}
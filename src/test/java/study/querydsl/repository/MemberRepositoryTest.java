@@ -1,21 +1,30 @@
 package study.querydsl.repository;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberArchive;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -110,6 +119,213 @@ class MemberRepositoryTest {
                 .containsExactly("member1","member2","member3");
     }
 
+    @Test
+    public void searchPageSortTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 20, teamA));
+        em.persist(new Member("member2", 20, teamB));
+        em.persist(new Member("member3", 10, teamB));
+        em.persist(new Member("member4", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        // when
+        Page<MemberTeamDto> byAge = memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 4, Sort.by(Sort.Order.desc("age"))));
+        Page<MemberTeamDto> byTeamName = memberRepository.searchPageSimple(condition,
+                PageRequest.of(0, 4, Sort.by("teamName")));
+
+        // then
+        // 같은 나이는 정렬 방향을 따라 member.id 역순
+        assertThat(byAge.getContent()).extracting("username")
+                .containsExactly("member4", "member2", "member1", "member3");
+        assertThat(byTeamName.getContent()).extracting("username")
+                .containsExactly("member1", "member4", "member2", "member3");
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 4, Sort.by("lastActiveAt"))))
+                .isInstanceOf(UnsupportedSortException.class);
+        // 두 속성을 덮는 인덱스는 없다
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 4, Sort.by("username", "age"))))
+                .isInstanceOf(UnsupportedSortException.class);
+
+        // hot, archive 를 이어 붙이는 경로는 정렬하지 않으므로 조용히 id 순서로 주지 않고 거절한다
+        MemberSearchCondition archived = new MemberSearchCondition();
+        archived.setIncludeArchived(true);
+        assertThatThrownBy(() -> memberRepository.searchPageSimple(archived, PageRequest.of(0, 4, Sort.by("age"))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+
+    @Test
+    public void searchPageDeferredJoinTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        for (int i = 1; i <= 8; i++) {
+            em.persist(new Member("member" + i, (i % 3) * 10, i % 2 == 0 ? teamA : teamB));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        PageRequest firstPage = PageRequest.of(0, 3, Sort.by(Sort.Order.desc("age")));
+        PageRequest secondPage = PageRequest.of(1, 3, Sort.by(Sort.Order.desc("age")));
+
+        // when
+        // 테스트 설정의 deferred-join-offset 은 2 라서 두 번째 페이지부터 id 를 먼저 페이징한다
+        Page<MemberTeamDto> first = memberRepository.searchPageComplex(condition, firstPage);
+        Page<MemberTeamDto> second = memberRepository.searchPageComplex(condition, secondPage);
+
+        // then
+        assertThat(first.getContent()).extracting("username")
+                .containsExactly("member8", "member5", "member2");
+        assertThat(second.getContent()).extracting("username", "teamName")
+                .containsExactly(tuple("member7", "teamB"), tuple("member4", "teamA"), tuple("member1", "teamB"));
+        assertThat(second.getTotalElements()).isEqualTo(6);
+    }
+
+    @Test
+    public void searchSparseFieldsTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setFields(Set.of("username", "age"));
+        MemberSearchCondition teamCondition = new MemberSearchCondition();
+        teamCondition.setFields(Set.of("teamId"));
+        teamCondition.setTeamName("teamA");
+
+        // when
+        List<MemberTeamDto> result = memberRepository.search(condition);
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(teamCondition, PageRequest.of(0, 1));
+
+        // then
+        assertThat(result).extracting("username", "age", "memberId", "teamName")
+                .containsExactlyInAnyOrder(tuple("member1", 10, null, null), tuple("member2", 20, null, null));
+        assertThat(page.getContent()).extracting("teamId", "username")
+                .containsExactly(tuple(teamA.getId(), null));
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThatThrownBy(() -> memberRepository.search(withFields("password")))
+                .isInstanceOf(UnsupportedFieldException.class);
+    }
+
+    private static MemberSearchCondition withFields(String... fields) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setFields(Set.of(fields));
+        return condition;
+    }
+
+    @Test
+    public void searchBatchTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition teamACondition = new MemberSearchCondition();
+        teamACondition.setTeamName("teamA");
+        MemberSearchCondition teamBCondition = new MemberSearchCondition();
+        teamBCondition.setTeamName("teamB");
+        MemberSearchCondition ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeGoe(20);
+        ageCondition.setAgeLoe(30);
+        MemberSearchCondition usernameCondition = new MemberSearchCondition();
+        usernameCondition.setUsername("member4");
+        em.flush();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        List<List<MemberTeamDto>> result;
+        try {
+            // when
+            result = memberRepository.searchBatch(List.of(teamACondition, teamBCondition, ageCondition, usernameCondition));
+
+            // then
+            // 모양이 다른 조건들도 쿼리 한 번으로 읽는다
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        assertThat(result).hasSize(4);
+        assertThat(result.get(0)).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result.get(1)).extracting("username").containsExactlyInAnyOrder("member3", "member4");
+        assertThat(result.get(2)).extracting("username").containsExactlyInAnyOrder("member2", "member3");
+        assertThat(result.get(3)).extracting("username").containsExactly("member4");
+    }
+
+    @Test
+    public void searchBatchDelegatesTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition fieldsCondition = withFields("username");
+        fieldsCondition.setAgeGoe(20);
+        MemberSearchCondition ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeLoe(10);
+
+        // when
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(List.of(fieldsCondition, ageCondition));
+
+        // then
+        // fields 조건은 search() 가 처리해 요청한 속성만 읽는다
+        assertThat(result.get(0)).extracting("username", "memberId").containsExactly(tuple("member2", null));
+        assertThat(result.get(1)).extracting("username").containsExactly("member1");
+        assertThatThrownBy(() -> memberRepository.searchBatch(Arrays.asList(ageCondition, null)))
+                .hasMessageContaining("must not contain null");
+    }
+
+    @Test
+    public void searchWithArchiveTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+
+        em.persist(new MemberArchive(member2, LocalDateTime.now()));
+        em.remove(member2);
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        // when
+        List<MemberTeamDto> hotOnly = memberRepository.search(condition);
+        condition.setIncludeArchived(true);
+        List<MemberTeamDto> withArchive = memberRepository.search(condition);
+        Page<MemberTeamDto> secondPage = memberRepository.searchPageComplex(condition, PageRequest.of(1, 2));
+
+        // then
+        assertThat(hotOnly).extracting("username").containsExactlyInAnyOrder("member1", "member3");
+        assertThat(withArchive).extracting("username").containsExactly("member1", "member3", "member2");
+        assertThat(secondPage.getTotalElements()).isEqualTo(3);
+        assertThat(secondPage.getContent()).extracting("username").containsExactly("member2");
+    }
+
     @Test
     public void querydslPredicateExcutorTest() throws Exception{
         Team teamA = new Team("teamA");
@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.TeamNameDictionary;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.search.engine=sql")
+@Transactional
+class MemberSqlRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Test
+    public void searchTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, null));
+        // JDBC 로 직접 읽으므로 먼저 flush 해야 보인다
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(35);
+        condition.setAgeLoe(40);
+        condition.setTeamName("teamB");
+
+        // when
+        List<MemberTeamDto> result = memberRepository.search(condition);
+        Page<MemberTeamDto> page = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 3));
+
+        // then
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result.get(0).getTeamName()).isEqualTo("teamB");
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+    }
+
+    // 사전은 커밋된 팀만 믿으므로 트랜잭션 없이 확인한다
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void teamNameUsesDictionaryTest() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, null));
+        });
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        MemberSearchCondition unknown = new MemberSearchCondition();
+        unknown.setTeamName("noSuchTeam");
+
+        try {
+            // when
+            List<MemberTeamDto> result = memberRepository.search(condition);
+            Page<MemberTeamDto> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+            Page<MemberTeamDto> unknownPage = memberRepository.searchPageComplex(unknown, PageRequest.of(0, 1));
+
+            // then
+            // 커밋된 팀은 조인 없이 team_id 로 거르고, 없는 팀은 DB 에 묻지 않는다
+            assertThat(teamNameDictionary.resolve("teamA").viaJoin()).isFalse();
+            assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+            assertThat(result).extracting("teamName").containsOnly("teamA");
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            assertThat(memberRepository.search(unknown)).isEmpty();
+            assertThat(unknownPage.getTotalElements()).isZero();
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+}
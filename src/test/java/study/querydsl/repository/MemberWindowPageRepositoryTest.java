@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.paging.total=window")
+@Transactional
+class MemberWindowPageRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    public void searchPageTest() throws Exception{
+        // given
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 5; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        // when
+        Page<MemberTeamDto> first = memberRepository.searchPageComplex(condition,
+                PageRequest.of(0, 2, Sort.by(Sort.Order.desc("age"))));
+        Page<MemberTeamDto> beyond = memberRepository.searchPageSimple(condition, PageRequest.of(5, 2));
+
+        // then
+        assertThat(first.getContent()).extracting("username").containsExactly("member5", "member4");
+        assertThat(first.getTotalElements()).isEqualTo(4);
+        assertThat(beyond.getContent()).isEmpty();
+        assertThat(beyond.getTotalElements()).isEqualTo(4);
+    }
+}
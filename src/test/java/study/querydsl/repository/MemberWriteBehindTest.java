@@ -0,0 +1,184 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberCreateRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// writer 스레드가 자체 트랜잭션으로 커밋하므로 트랜잭션 없이 확인한다
+@SpringBootTest(properties = {
+        "querydsl.write-behind.max-batch-size=3",
+        "querydsl.write-behind.linger-ms=300"
+})
+class MemberWriteBehindTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    MemberWriteBehind memberWriteBehind;
+    @Autowired
+    AutowireCapableBeanFactory beanFactory;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @Test
+    public void batchTest() throws Exception{
+        // given
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        try {
+            // when
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                futures.add(memberWriteBehind.submit(request("member" + i)));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+            // then
+            // max-batch-size 3 개씩 커밋한다: 3 + 3 + 1
+            assertThat(futures).allMatch(future -> future.join() != null);
+            assertThat(statistics.getSuccessfulTransactionCount()).isEqualTo(3);
+            assertThat(count()).isEqualTo(7);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void lingerTest() throws Exception{
+        // when
+        long start = System.nanoTime();
+        Long memberId = memberWriteBehind.submit(request("member1")).get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        // 배치가 차지 않으면 linger-ms 를 기다렸다가 커밋한다
+        assertThat(memberId).isNotNull();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(300);
+        assertThat(count()).isEqualTo(1);
+    }
+
+    @Test
+    public void queueFullTest() throws Exception{
+        // given
+        // writer 를 시작하지 않아 큐가 비워지지 않는다
+        MemberWriteBehind writeBehind = new MemberWriteBehind(transactionTemplate, 2, 3, 5, 100);
+        CompletableFuture<Long> first = writeBehind.submit(request("member1"));
+        CompletableFuture<Long> second = writeBehind.submit(request("member2"));
+
+        // when // then
+        assertThatThrownBy(() -> writeBehind.submit(request("member3")))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("full");
+
+        // 종료하면 남은 요청은 예외로 완료되고 이후 요청은 거절한다
+        writeBehind.stop();
+        assertThatThrownBy(() -> first.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(second).isCompletedExceptionally();
+        assertThatThrownBy(() -> writeBehind.submit(request("member4")))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void stopCommitsQueuedRequestsTest() throws Exception{
+        // given
+        MemberWriteBehind writeBehind = new MemberWriteBehind(transactionTemplate, 10, 3, 300, 5000);
+        beanFactory.autowireBean(writeBehind);
+        writeBehind.start();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(writeBehind.submit(request("member" + i)));
+        }
+
+        // when
+        writeBehind.stop();
+
+        // then
+        // 종료 전에 큐에 들어온 요청은 모두 커밋된다
+        assertThat(futures).allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+        assertThat(count()).isEqualTo(5);
+    }
+
+    @Test
+    public void stopTimeoutTest() throws Exception{
+        // given
+        // 커밋이 종료 시간을 넘기고, 중단되면 그제야 커밋을 이어간다
+        CountDownLatch commitStarted = new CountDownLatch(1);
+        TransactionTemplate slowTemplate = new TransactionTemplate(transactionManager) {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                commitStarted.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.execute(action);
+            }
+        };
+        MemberWriteBehind writeBehind = new MemberWriteBehind(slowTemplate, 10, 1, 0, 200);
+        beanFactory.autowireBean(writeBehind);
+        writeBehind.start();
+        CompletableFuture<Long> inFlight = writeBehind.submit(request("member1"));
+        assertThat(commitStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Long> queued = writeBehind.submit(request("member2"));
+
+        // when
+        long start = System.nanoTime();
+        writeBehind.stop();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // then
+        // 커밋 중이던 요청은 커밋 결과대로 완료되고, 커밋을 시작하지 않은 요청만 예외로 끝난다
+        assertThat(inFlight.get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        // 중단된 writer 는 큐를 비우고 바로 끝난다
+        assertThat(elapsedMillis).isLessThan(400);
+        assertThat(count()).isEqualTo(1);
+    }
+
+    private long count() {
+        return transactionTemplate.execute(status ->
+                em.createQuery("select count(m) from Member m", Long.class).getSingleResult());
+    }
+
+    private static MemberCreateRequest request(String username) {
+        MemberCreateRequest request = new MemberCreateRequest();
+        request.setUsername(username);
+        request.setAge(10);
+        return request;
+    }
+}
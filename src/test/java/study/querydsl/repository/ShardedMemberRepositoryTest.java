@@ -0,0 +1,217 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberCreateRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest(properties = {
+        "querydsl.sharding.enabled=true",
+        "querydsl.sharding.urls=jdbc:h2:mem:shard0-${random.uuid};DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1-${random.uuid};DB_CLOSE_DELAY=-1"
+})
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberWriteBehind memberWriteBehind;
+    @Autowired
+    MemberCounterBuffer memberCounterBuffer;
+    @Autowired
+    MemberShards memberShards;
+
+    @AfterEach
+    public void cleanUp() {
+        for (int shard = 0; shard < memberShards.size(); shard++) {
+            memberShards.write(shard, em -> {
+                em.createQuery("delete from Member").executeUpdate();
+                return em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
+    @Test
+    public void shardingTest() throws Exception{
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        assertThat(memberShards.shardOf(teamA.getId())).isNotEqualTo(memberShards.shardOf(teamB.getId()));
+
+        shardedMemberRepository.save("member1", 10, teamA.getId());
+        shardedMemberRepository.save("member2", 20, teamA.getId());
+        shardedMemberRepository.save("member3", 30, teamB.getId());
+        shardedMemberRepository.save("member4", 40, teamB.getId());
+
+        // when
+        MemberSearchCondition teamBCondition = new MemberSearchCondition();
+        teamBCondition.setTeamName("teamB");
+        List<MemberTeamDto> teamBMembers = memberRepository.search(teamBCondition);
+
+        List<MemberTeamDto> all = memberRepository.search(new MemberSearchCondition());
+        Page<MemberTeamDto> secondPage = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(1, 3));
+        Page<MemberTeamDto> simplePage = memberRepository.searchPageSimple(new MemberSearchCondition(), PageRequest.of(0, 3));
+
+        // then
+        assertThat(teamBMembers).extracting("username").containsExactly("member3", "member4");
+        assertThat(all).extracting("username").containsExactlyInAnyOrder("member1", "member2", "member3", "member4");
+        assertThat(all).extracting("memberId").isSorted().doesNotHaveDuplicates();
+        assertThat(secondPage.getTotalElements()).isEqualTo(4);
+        assertThat(secondPage.getContent()).hasSize(1);
+        assertThat(simplePage.getTotalElements()).isEqualTo(4);
+        assertThat(simplePage.getContent()).hasSize(3);
+    }
+
+    @Test
+    public void sortedPageTest() throws Exception{
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        shardedMemberRepository.save("member1", 20, teamA.getId());
+        shardedMemberRepository.save("member2", 40, teamA.getId());
+        shardedMemberRepository.save("member3", 30, teamB.getId());
+        shardedMemberRepository.save("member4", 10, teamB.getId());
+        shardedMemberRepository.save("member5", 30, null);
+
+        // when
+        Page<MemberTeamDto> byAgeDesc = memberRepository.searchPageComplex(new MemberSearchCondition(),
+                PageRequest.of(0, 10, Sort.by(Sort.Order.desc("age"))));
+        Page<MemberTeamDto> byTeamName = memberRepository.searchPageSimple(new MemberSearchCondition(),
+                PageRequest.of(0, 3, Sort.by("teamName")));
+
+        // then
+        // 같은 나이는 정렬 방향을 따라 memberId 역순. 샤드 0 의 id 가 샤드 1 보다 작다
+        List<Long> ids = byAgeDesc.getContent().stream().map(MemberTeamDto::getMemberId).toList();
+        assertThat(byAgeDesc.getContent()).extracting("age").containsExactly(40, 30, 30, 20, 10);
+        assertThat(ids.subList(1, 3)).isSortedAccordingTo(Comparator.reverseOrder());
+        // 팀 없는 회원(null)이 먼저다
+        assertThat(byTeamName.getContent()).extracting("teamName").containsExactly(null, "teamA", "teamA");
+        assertThat(byTeamName.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    public void concurrentReadsTest() throws Exception{
+        // given
+        // 샤드 수보다 많은 조회가 동시에 한 샤드를 읽는다. 모두 시작해야 끝나므로 줄 서면 기다리다 끝난다
+        int readers = memberShards.size() * 2;
+        CountDownLatch started = new CountDownLatch(readers);
+
+        // when
+        List<CompletableFuture<Boolean>> reads = IntStream.range(0, readers)
+                .mapToObj(i -> memberShards.readAsync(0, em -> {
+                    started.countDown();
+                    try {
+                        return started.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }))
+                .toList();
+
+        // then
+        assertThat(reads).allSatisfy(read -> assertThat(read.get(10, TimeUnit.SECONDS)).isTrue());
+    }
+
+    @Test
+    public void deepPageTest() throws Exception{
+        // given
+        int size = 10;
+        Pageable deep = PageRequest.of((int) (ShardedMemberRepository.MAX_PAGE_END / size), size);
+
+        // when // then
+        // 샤드마다 offset + size 개를 읽으므로 깊은 페이지는 거절한다
+        assertThatThrownBy(() -> memberRepository.searchPageComplex(new MemberSearchCondition(), deep))
+                .isInstanceOf(QueryBudgetException.class);
+        assertThat(memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, size)).getContent())
+                .isEmpty();
+    }
+
+    @Test
+    public void memberIdEncodesShardTest() throws Exception{
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+
+        // when
+        Member memberA = shardedMemberRepository.save("member1", 10, teamA.getId());
+        Member memberB = shardedMemberRepository.save("member2", 20, teamB.getId());
+
+        // then
+        assertThat(memberShards.shardOfMember(memberA.getId())).isEqualTo(memberShards.shardOf(teamA.getId()));
+        assertThat(memberShards.shardOfMember(memberB.getId())).isEqualTo(memberShards.shardOf(teamB.getId()));
+        assertThat(memberShards.shardOfMember(-1L)).isEqualTo(-1);
+    }
+
+    @Test
+    public void routedReadsAndWritesTest() throws Exception{
+        // given
+        Team teamA = shardedMemberRepository.saveTeam("teamA");
+        Team teamB = shardedMemberRepository.saveTeam("teamB");
+        Member memberA = shardedMemberRepository.save("member1", 10, teamA.getId());
+        memberJpaRepository.save(new Member("member2", 20, teamB));
+
+        MemberCreateRequest request = new MemberCreateRequest();
+        request.setUsername("member3");
+        request.setAge(30);
+        request.setTeamId(teamB.getId());
+        Long memberBId = memberWriteBehind.submit(request).get();
+
+        // when
+        memberCounterBuffer.addAge(memberA.getId(), 5);
+        memberCounterBuffer.addAge(memberBId, 1);
+        memberCounterBuffer.flush();
+
+        // then
+        assertThat(memberShards.shardOfMember(memberBId)).isEqualTo(memberShards.shardOf(teamB.getId()));
+        assertThat(memberJpaRepository.findById(memberA.getId())).get()
+                .extracting(Member::getAge).isEqualTo(15);
+        assertThat(memberJpaRepository.findAllById(List.of(memberA.getId(), memberBId)))
+                .extracting(Member::getUsername, Member::getAge)
+                .containsExactlyInAnyOrder(tuple("member1", 15),
+                        tuple("member3", 31));
+        assertThat(memberJpaRepository.findByUsername("member2")).extracting(found -> found.getTeam().getName())
+                .containsExactly("teamB");
+        assertThat(memberRepository.findByUsername("member3")).hasSize(1);
+        assertThat(memberJpaRepository.findAll()).hasSize(3);
+    }
+
+    @Test
+    public void unroutedPathsFailFastTest() throws Exception{
+        // given
+        MemberSearchCondition archived = new MemberSearchCondition();
+        archived.setIncludeArchived(true);
+
+        // when & then
+        assertThatThrownBy(() -> memberJpaRepository.scan(new MemberSearchCondition(), scanned -> {
+        })).isInstanceOf(UnroutedShardAccessException.class);
+        assertThatThrownBy(() -> memberRepository.search(archived))
+                .isInstanceOf(UnroutedShardAccessException.class);
+        assertThatThrownBy(() -> memberRepository.count(member.age.goe(0)))
+                .isInstanceOf(UnroutedShardAccessException.class);
+    }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.sql;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.ForeignKey;
+import com.querydsl.sql.RelationalPathBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 손으로 관리하는 SMember, STeam 이 엔티티에서 만든 스키마와 어긋나지 않았는지 확인한다
+@SpringBootTest
+class SqlQueryTypesTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    public void memberMatchesSchema() throws Exception{
+        assertMatchesSchema(SMember.member);
+        assertThat(foreignKeys(SMember.member)).containsExactly("TEAM_ID->TEAM_ID");
+    }
+
+    @Test
+    public void teamMatchesSchema() throws Exception{
+        assertMatchesSchema(STeam.team);
+    }
+
+    private void assertMatchesSchema(RelationalPathBase<?> queryType) throws SQLException {
+        Map<String, Column> columns = new HashMap<>();
+        Set<String> primaryKey = new HashSet<>();
+        Set<String> foreignKeys = new HashSet<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String schema = queryType.getSchemaName();
+            String table = queryType.getTableName();
+            try (ResultSet rs = metaData.getColumns(null, schema, table, null)) {
+                while (rs.next()) {
+                    columns.put(rs.getString("COLUMN_NAME"),
+                            new Column(rs.getInt("DATA_TYPE"), rs.getInt("NULLABLE") == DatabaseMetaData.columnNullable));
+                }
+            }
+            try (ResultSet rs = metaData.getPrimaryKeys(null, schema, table)) {
+                while (rs.next()) {
+                    primaryKey.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            try (ResultSet rs = metaData.getImportedKeys(null, schema, table)) {
+                while (rs.next()) {
+                    foreignKeys.add(rs.getString("FKCOLUMN_NAME") + "->" + rs.getString("PKCOLUMN_NAME"));
+                }
+            }
+        }
+
+        Map<String, Column> mapped = new HashMap<>();
+        for (Path<?> path : queryType.getColumns()) {
+            ColumnMetadata metadata = queryType.getMetadata(path);
+            mapped.put(metadata.getName(), new Column(metadata.getJdbcType(), metadata.isNullable()));
+        }
+
+        assertThat(mapped).as(queryType.getTableName()).isEqualTo(columns);
+        assertThat(queryType.getPrimaryKey().getLocalColumns())
+                .extracting(path -> queryType.getMetadata(path).getName())
+                .containsExactlyInAnyOrderElementsOf(primaryKey);
+        assertThat(foreignKeys(queryType)).containsExactlyInAnyOrderElementsOf(foreignKeys);
+    }
+
+    private static Set<String> foreignKeys(RelationalPathBase<?> queryType) {
+        return queryType.getForeignKeys().stream()
+                .map(SqlQueryTypesTest::describe)
+                .collect(Collectors.toSet());
+    }
+
+    private static String describe(ForeignKey<?> foreignKey) {
+        RelationalPathBase<?> entity = (RelationalPathBase<?>) foreignKey.getEntity();
+        String local = foreignKey.getLocalColumns().stream()
+                .map(path -> entity.getMetadata(path).getName())
+                .collect(Collectors.joining(","));
+        return local + "->" + String.join(",", foreignKey.getForeignColumns());
+    }
+
+    private record Column(int jdbcType, boolean nullable) {
+    }
+}
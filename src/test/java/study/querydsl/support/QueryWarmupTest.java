@@ -0,0 +1,72 @@
+package study.querydsl.support;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "querydsl.warmup.enabled=true",
+        "querydsl.warmup.iterations=1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class QueryWarmupTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Autowired
+    QueryWarmup queryWarmup;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    EntityManagerFactory emf;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void cleanup() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void boundedQueriesTest() throws Exception{
+        // given
+        // 한 페이지보다 많은 회원이 모두 한 팀에 있다
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < PAGE_SIZE * 3; i++) {
+                em.persist(new Member("member" + i, i, teamA));
+            }
+        });
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // when
+        queryWarmup.run(null);
+
+        // then
+        // 엔티티를 읽지 않고, 어떤 쿼리도 한 번에 한 페이지보다 많이 읽지 않는다
+        assertThat(statistics.getQueries()).isNotEmpty();
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        for (String query : statistics.getQueries()) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+            assertThat(queryStatistics.getExecutionRowCount())
+                    .as(query)
+                    .isLessThanOrEqualTo(PAGE_SIZE * queryStatistics.getExecutionCount());
+        }
+    }
+}
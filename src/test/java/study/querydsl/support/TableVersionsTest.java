@@ -0,0 +1,54 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+class TableVersionsTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    TableVersions tableVersions;
+
+    @Test
+    public void bulkUpdateBumpsVersionOnCommit() throws Exception{
+        long before = tableVersions.current(TableVersions.MEMBER);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            new JPAQueryFactory(em)
+                    .update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.id.eq(-1L))
+                    .execute();
+
+            // 커밋 전에는 그대로
+            assertThat(tableVersions.current(TableVersions.MEMBER)).isEqualTo(before);
+        });
+
+        assertThat(tableVersions.current(TableVersions.MEMBER)).isEqualTo(before + 1);
+    }
+
+    @Test
+    public void rollbackKeepsVersion() throws Exception{
+        long before = tableVersions.current(TableVersions.MEMBER);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("member1", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(tableVersions.current(TableVersions.MEMBER)).isEqualTo(before);
+    }
+}
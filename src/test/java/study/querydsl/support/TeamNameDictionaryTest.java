@@ -0,0 +1,125 @@
+package study.querydsl.support;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 사전은 커밋된 팀만 믿으므로 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest
+class TeamNameDictionaryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+    @Autowired
+    MemberRepository memberRepository;
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void teamNameFilterUsesDictionary() throws Exception{
+        // given
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("dictA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            return teamA.getId();
+        });
+
+        // when
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictA");
+        List<MemberTeamDto> result = memberRepository.search(condition);
+
+        // then
+        assertThat(teamNameDictionary.resolve("dictA").viaJoin()).isFalse();
+        assertThat(teamNameDictionary.resolve("dictA").teamId()).isEqualTo(teamId);
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+    }
+
+    @Test
+    public void renamedTeamIsSeenAfterCommit() throws Exception{
+        // given
+        Long teamId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("dictA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            return teamA.getId();
+        });
+        assertThat(teamNameDictionary.resolve("dictA").teamId()).isEqualTo(teamId);
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("update Team t set t.name = :name where t.id = :id")
+                    .setParameter("name", "dictB")
+                    .setParameter("id", teamId)
+                    .executeUpdate();
+
+            // 커밋 전에는 이 트랜잭션만 바뀐 이름을 보므로 조인으로 거른다
+            assertThat(teamNameDictionary.resolve("dictB").viaJoin()).isTrue();
+        });
+
+        // then
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictA");
+        assertThat(memberRepository.search(condition)).isEmpty();
+        condition.setTeamName("dictB");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+    }
+
+    @Test
+    public void unknownTeamReturnsEmpty() throws Exception{
+        // given
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("noSuchTeam");
+
+        // when
+        List<MemberTeamDto> result = memberRepository.search(condition);
+
+        // then
+        assertThat(teamNameDictionary.resolve("noSuchTeam").isUnknown()).isTrue();
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void teamPersistedInTransactionIsFoundViaJoin() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("dictNew");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+
+            // when
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("dictNew");
+            List<MemberTeamDto> result = memberRepository.search(condition);
+
+            // then
+            // flush 전이라도 persist 때 팀 쓰기로 기록되어 사전 대신 조인으로 거른다
+            assertThat(teamNameDictionary.resolve("dictNew").viaJoin()).isTrue();
+            assertThat(result).extracting("username").containsExactly("member1");
+        });
+    }
+}
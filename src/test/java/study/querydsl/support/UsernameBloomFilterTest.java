@@ -0,0 +1,164 @@
+package study.querydsl.support;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 필터는 커밋된 회원을 기준으로 하므로 트랜잭션 없이 커밋된 데이터로 확인한다
+@SpringBootTest
+class UsernameBloomFilterTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    UsernameBloomFilter usernameFilter;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        usernameFilter.rebuild();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @Test
+    public void persistedUsernameIsFound() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("bloom1", 10)));
+
+        // when
+        boolean absent = usernameFilter.isDefinitelyAbsent("bloom1");
+
+        // then
+        assertThat(absent).isFalse();
+        assertThat(memberRepository.findByUsername("bloom1")).extracting("username").containsExactly("bloom1");
+        assertThat(memberJpaRepository.findByUsername("bloom1")).hasSize(1);
+        assertThat(memberJpaRepository.findByUsername_Querydsl("bloom1")).hasSize(1);
+    }
+
+    @Test
+    public void unknownUsernameSkipsDatabase() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("bloom1", 10)));
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        try {
+            // when
+            boolean absent = usernameFilter.isDefinitelyAbsent("noSuchMember");
+            List<Member> byRepository = memberRepository.findByUsername("noSuchMember");
+            List<Member> byJpaRepository = memberJpaRepository.findByUsername("noSuchMember");
+            List<Member> byQuerydsl = memberJpaRepository.findByUsername_Querydsl("noSuchMember");
+
+            // then
+            assertThat(absent).isTrue();
+            assertThat(byRepository).isEmpty();
+            assertThat(byJpaRepository).isEmpty();
+            assertThat(byQuerydsl).isEmpty();
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+
+            // 있는 이름은 DB 에 묻는다
+            memberRepository.findByUsername("bloom1");
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void entityRenameAddsNewName() throws Exception{
+        // given
+        Long memberId = transactionTemplate.execute(status -> {
+            Member member = new Member("bloom1", 10);
+            em.persist(member);
+            return member.getId();
+        });
+
+        // when
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, memberId).setUsername("renamed"));
+
+        // then
+        // 필터 전체를 버리지 않고 새 이름만 더한다
+        assertThat(usernameFilter.isDefinitelyAbsent("renamed")).isFalse();
+        assertThat(usernameFilter.isDefinitelyAbsent("noSuchMember")).isTrue();
+        assertThat(memberRepository.findByUsername("renamed")).hasSize(1);
+    }
+
+    @Test
+    public void unflushedRenameIsFoundInSameTransaction() throws Exception{
+        // given
+        Long memberId = transactionTemplate.execute(status -> {
+            Member member = new Member("bloom1", 10);
+            em.persist(member);
+            return member.getId();
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // when
+            // flush 전이라 새 이름은 아직 필터에 없다
+            em.find(Member.class, memberId).setUsername("renamed");
+
+            // then
+            // 바뀐 이름만 DB 에 묻고, 다른 없는 이름은 계속 필터로 거른다
+            assertThat(usernameFilter.isDefinitelyAbsent("renamed")).isFalse();
+            assertThat(usernameFilter.isDefinitelyAbsent("noSuchMember")).isTrue();
+            assertThat(memberRepository.findByUsername("renamed")).hasSize(1);
+        });
+    }
+
+    @Test
+    public void bulkUpdateFilteredByUsernameKeepsFilter() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("bloom1", 10)));
+
+        // when
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("update Member m set m.age = 20 where m.username = 'bloom1'")
+                        .executeUpdate());
+
+        // then
+        // username 을 바꾸지 않는 update 는 where 절에 있어도 필터를 버리지 않는다
+        assertThat(usernameFilter.isDefinitelyAbsent("noSuchMember")).isTrue();
+    }
+
+    @Test
+    public void bulkRenameMarksStaleUntilRebuilt() throws Exception{
+        // given
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("bloom1", 10)));
+
+        // when
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("update Member m set m.username = 'renamed' where m.username = 'bloom1'")
+                        .executeUpdate());
+
+        // then
+        // 다시 만들기 전에는 필터를 믿지 않고 DB 에 묻는다
+        assertThat(memberRepository.findByUsername("renamed")).hasSize(1);
+        usernameFilter.rebuild();
+        assertThat(usernameFilter.isDefinitelyAbsent("renamed")).isFalse();
+        assertThat(usernameFilter.count()).isEqualTo(1);
+    }
+}
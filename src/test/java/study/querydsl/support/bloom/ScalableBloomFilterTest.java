@@ -0,0 +1,51 @@
+package study.querydsl.support.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    public void noFalseNegativesWhileGrowing() throws Exception{
+        // given
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+
+        // when
+        // 첫 단계 용량의 50배를 넣으면 단계가 늘어난다
+        for (int i = 0; i < 50_000; i++) {
+            filter.add("member" + i);
+        }
+
+        // then
+        assertThat(filter.stageCount()).isGreaterThan(1);
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.mightContain("member" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysBounded() throws Exception{
+        // given
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.add("member" + i);
+        }
+
+        // when
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // then
+        // 전체 오탐률 상한은 p0 / (1 - tightening) = 2%
+        double observed = (double) falsePositives / probes;
+        assertThat(observed).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveRate()).isLessThan(0.02);
+        assertThat(filter.sizeInBytes()).isPositive();
+    }
+}
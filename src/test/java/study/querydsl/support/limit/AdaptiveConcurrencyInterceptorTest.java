@@ -0,0 +1,161 @@
+package study.querydsl.support.limit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "querydsl.limiter.initial-limit=2",
+        "querydsl.limiter.min-limit=1"
+})
+@AutoConfigureMockMvc
+@Import(AdaptiveConcurrencyInterceptorTest.PendingController.class)
+class AdaptiveConcurrencyInterceptorTest {
+
+    private static final String V4 = "GET /v4/members";
+    private static final String LOOKUP = "GET /members";
+    private static final String CREATE = "POST /members";
+    private static final String PENDING = "GET /members/pending/{id}";
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void cleanup() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+    }
+
+    @Test
+    public void deferredResultTest() throws Exception{
+        // given
+        // 비동기가 시작된 첫 디스패치의 afterCompletion 은 허가를 반납하지 않는다
+        MvcResult first = mockMvc.perform(get("/v4/members").param("username", "member1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult second = mockMvc.perform(get("/v4/members").param("username", "member2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(inFlight(V4)).isEqualTo(2);
+        double rejectedBefore = rejected(V4);
+
+        // when // then
+        // 한도를 넘으면 기다리지 않고 503
+        mockMvc.perform(get("/v4/members").param("username", "member3"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        assertThat(rejected(V4)).isEqualTo(rejectedBefore + 1);
+
+        // 다른 엔드포인트는 따로 센다
+        mockMvc.perform(get("/members").param("ids", "1"))
+                .andExpect(status().isOk());
+        assertThat(inFlight(LOOKUP)).isEqualTo(0);
+
+        // 비동기 디스패치가 끝나야 반납한다
+        mockMvc.perform(asyncDispatch(first))
+                .andExpect(status().isOk());
+        assertThat(inFlight(V4)).isEqualTo(1);
+        mockMvc.perform(asyncDispatch(second))
+                .andExpect(status().isOk());
+        assertThat(inFlight(V4)).isEqualTo(0);
+    }
+
+    @Test
+    public void completableFutureTest() throws Exception{
+        // given
+        MvcResult result = mockMvc.perform(post("/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"member1\",\"age\":10}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(inFlight(CREATE)).isEqualTo(1);
+
+        // when
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated());
+
+        // then
+        assertThat(inFlight(CREATE)).isEqualTo(0);
+        assertThat(limit(CREATE)).isEqualTo(2);
+    }
+
+    @Test
+    public void asyncTimeoutTest() throws Exception{
+        // given
+        // 매핑 패턴으로 묶으므로 id 가 달라도 같은 한도를 쓴다
+        MvcResult first = mockMvc.perform(get("/members/pending/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(get("/members/pending/2"))
+                .andExpect(request().asyncStarted());
+        mockMvc.perform(get("/members/pending/3"))
+                .andExpect(status().isServiceUnavailable());
+
+        // when
+        MockAsyncContext asyncContext = (MockAsyncContext) first.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        // then
+        // 타임아웃은 503 으로 끝나고, 실패로 반납되어 한도가 줄어든다
+        mockMvc.perform(asyncDispatch(first))
+                .andExpect(status().isServiceUnavailable());
+        assertThat(inFlight(PENDING)).isEqualTo(1);
+        assertThat(limit(PENDING)).isEqualTo(1);
+    }
+
+    private double inFlight(String endpoint) {
+        return meterRegistry.get("member.limiter.inflight").tag("endpoint", endpoint).gauge().value();
+    }
+
+    private double limit(String endpoint) {
+        return meterRegistry.get("member.limiter.limit").tag("endpoint", endpoint).gauge().value();
+    }
+
+    private double rejected(String endpoint) {
+        return meterRegistry.counter("member.limiter.rejected", "endpoint", endpoint).count();
+    }
+
+    // 끝나지 않는 비동기 요청
+    @TestConfiguration
+    @RestController
+    static class PendingController {
+
+        @GetMapping("/members/pending/{id}")
+        public DeferredResult<String> pending(@PathVariable Long id) {
+            return new DeferredResult<>();
+        }
+    }
+}
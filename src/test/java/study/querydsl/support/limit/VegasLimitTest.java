@@ -0,0 +1,74 @@
+package study.querydsl.support.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VegasLimitTest {
+
+    private static final long BASE_RTT = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    public void limitFollowsLatency() throws Exception{
+        // given
+        VegasLimit limit = new VegasLimit(10, 2, 100, 1000);
+
+        // when
+        // 한도를 꽉 채운 상태에서 지연 시간이 그대로면 한도가 오른다
+        saturate(limit, BASE_RTT, 20);
+        int grown = limit.getLimit();
+
+        // DB 가 느려져 지연 시간이 4배가 되면 한도가 내려간다
+        saturate(limit, BASE_RTT * 4, 50);
+        int shrunk = limit.getLimit();
+
+        // then
+        assertThat(grown).isGreaterThan(10);
+        assertThat(shrunk).isLessThan(grown);
+    }
+
+    @Test
+    public void rejectsOverLimit() throws Exception{
+        // given
+        VegasLimit limit = new VegasLimit(2, 2, 100, 1000);
+
+        // when
+        boolean first = limit.tryAcquire();
+        boolean second = limit.tryAcquire();
+        boolean third = limit.tryAcquire();
+
+        // then
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void dropShrinksLimit() throws Exception{
+        // given
+        VegasLimit limit = new VegasLimit(50, 2, 100, 1000);
+
+        // when
+        limit.tryAcquire();
+        limit.release(BASE_RTT * 2, true);
+
+        // then
+        assertThat(limit.getLimit()).isLessThan(50);
+    }
+
+    // 한도만큼 동시에 들고 있다가 모두 반납하기를 rounds 번
+    private static void saturate(VegasLimit limit, long rtt, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limit.release(rtt, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.support.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(OutputCaptureExtension.class)
+class AsyncSqlLogAppenderTest {
+
+    @Test
+    public void overflowTest(CapturedOutput output) throws Exception{
+        // given
+        // 쓰기 스레드를 시작하기 전이라 큐가 비지 않는다
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncSqlLogAppender appender = new AsyncSqlLogAppender(2, meterRegistry);
+
+        // when
+        boolean first = appender.offer(event("select col_1 from member"));
+        boolean second = appender.offer(event("select col_2 from member"));
+        boolean third = appender.offer(event("select col_3 from member"));
+
+        // then
+        // 가득 차면 기다리지 않고 버리고 센다
+        assertThat(first).isTrue();
+        assertThat(second).isTrue();
+        assertThat(third).isFalse();
+        assertThat(meterRegistry.counter("sql.log.dropped").count()).isEqualTo(1);
+
+        // 멈출 때 남은 이벤트를 모두 쓰고, 쓴 만큼 자리가 난다. SQL 은 여러 줄로 포맷된다
+        appender.start();
+        appender.stop();
+        assertThat(output).contains("col_1").contains("col_2").doesNotContain("col_3");
+        assertThat(appender.offer(event("select col_4 from member"))).isTrue();
+        assertThat(appender.offer(event("select col_5 from member"))).isTrue();
+    }
+
+    private static SqlLogEvent event(String sql) {
+        return new SqlLogEvent("sampled", 1, 1, sql, null);
+    }
+}
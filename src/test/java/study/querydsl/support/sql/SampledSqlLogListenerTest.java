@@ -0,0 +1,97 @@
+package study.querydsl.support.sql;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.PreparedStatementInformation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampledSqlLogListenerTest {
+
+    private static final long SLOW_MILLIS = 200;
+
+    private final List<SqlLogEvent> events = new ArrayList<>();
+    // 쓰기 스레드를 시작하지 않고 넘겨받은 이벤트만 모은다
+    private final AsyncSqlLogAppender appender = new AsyncSqlLogAppender(10, new SimpleMeterRegistry()) {
+        @Override
+        public boolean offer(SqlLogEvent event) {
+            events.add(event);
+            return true;
+        }
+    };
+
+    @AfterEach
+    public void clearContext() {
+        SqlLogContext.clear();
+    }
+
+    @Test
+    public void sampleRateTest() throws Exception{
+        // given
+        SampledSqlLogListener listener = new SampledSqlLogListener(appender, 0.1, SLOW_MILLIS);
+        SampledSqlLogListener never = new SampledSqlLogListener(appender, 0.0, SLOW_MILLIS);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            listener.onAfterAnyExecute(statement(), 0, null);
+        }
+        int sampled = events.size();
+        for (int i = 0; i < 1_000; i++) {
+            never.onAfterAnyExecute(statement(), 0, null);
+        }
+
+        // then
+        // 10% 의 표준편차는 30 건 정도다
+        assertThat(sampled).isBetween(800, 1200);
+        assertThat(events).hasSize(sampled).extracting("reason").containsOnly("sampled");
+    }
+
+    @Test
+    public void slowQueryTest() throws Exception{
+        // given
+        SampledSqlLogListener listener = new SampledSqlLogListener(appender, 0.0, SLOW_MILLIS);
+
+        // when
+        listener.onAfterAnyExecute(statement(), TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS - 1), null);
+        listener.onAfterAnyExecute(statement(), TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS), null);
+        listener.onAfterAnyExecute(statement(), 0, new SQLException("boom"));
+
+        // then
+        // 느린 쿼리와 실패는 샘플링과 상관없이 값과 함께 남긴다
+        assertThat(events).extracting("reason").containsExactly("slow", "error");
+        assertThat(events.get(0).elapsedMillis()).isEqualTo(SLOW_MILLIS);
+        assertThat(events.get(0).sql()).contains("'member1'");
+        assertThat(events.get(1).error()).isEqualTo("boom");
+    }
+
+    @Test
+    public void detailWithoutValuesTest() throws Exception{
+        // given
+        SampledSqlLogListener listener = new SampledSqlLogListener(appender, 0.0, SLOW_MILLIS);
+        SqlLogContext.enableDetailed();
+
+        // when
+        listener.onAfterAnyExecute(statement(), 0, null);
+        listener.onAfterAnyExecute(statement(), TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS), null);
+
+        // then
+        // 헤더로 켠 로그에는 바인딩 값이 없다. 느린 쿼리는 원래대로 남긴다
+        assertThat(events).extracting("reason").containsExactly(SampledSqlLogListener.DETAIL, "slow");
+        assertThat(events.get(0).sql()).contains("username = ?").doesNotContain("member1");
+        assertThat(events.get(1).sql()).contains("'member1'");
+    }
+
+    private static PreparedStatementInformation statement() {
+        PreparedStatementInformation statement = new PreparedStatementInformation(
+                ConnectionInformation.fromTestConnection(null), "select * from member where username = ?");
+        statement.setParameterValue(1, "member1");
+        return statement;
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.support.sql;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlLogRequestFilterTest {
+
+    private final SqlLogRequestFilter filter = new SqlLogRequestFilter(Set.of("127.0.0.1"));
+
+    @Test
+    public void headerOverrideTest() throws Exception{
+        // when // then
+        assertThat(detailed("127.0.0.1", "true")).isTrue();
+        assertThat(detailed("127.0.0.1", null)).isFalse();
+        assertThat(detailed("127.0.0.1", "false")).isFalse();
+        // 허용하지 않은 주소의 헤더는 무시한다
+        assertThat(detailed("10.0.0.1", "true")).isFalse();
+        // 요청이 끝나면 스레드에 남기지 않는다
+        assertThat(SqlLogContext.isDetailed()).isFalse();
+    }
+
+    private boolean detailed(String remoteAddr, String header) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/members");
+        request.setRemoteAddr(remoteAddr);
+        if (header != null) {
+            request.addHeader(SqlLogRequestFilter.HEADER, header);
+        }
+        AtomicBoolean detailed = new AtomicBoolean();
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> detailed.set(SqlLogContext.isDetailed()));
+        return detailed.get();
+    }
+}